@@ -2,27 +2,60 @@ package com.moozvine.detox;
 
 import com.moozvine.detox.repackaged.org.json.JSONException;
 import com.moozvine.detox.repackaged.org.json.JSONObject;
+import com.moozvine.detox.repackaged.org.json.JSONTokener;
+import com.moozvine.detox.repackaged.org.json.SymbolTable;
 
 import java.io.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public abstract class AbstractSerializationService implements SerializationService {
 
-  private final Map<Class, Serializer> serializers = new HashMap<>();
+  /**
+   * How much of the input to quote when a stream can't be parsed.
+   */
+  private static final int ERROR_CONTEXT_CHARS = 200;
+
+  private static final String SERIALIZED_TYPE = "serializedType";
+
+  /**
+   * How many elements writeAll writes between flushes of the stream, so that a reader at the other end sees steady
+   * progress without a flush per element.
+   */
+  private static final int WRITE_ALL_FLUSH_INTERVAL = 1000;
+
+  /**
+   * Keys, type names and enum names recur across everything a service reads, so its parsers share one table of them.
+   * Strings longer than this are rarely repeated, and are not looked up.
+   */
+  private static final int SYMBOL_TABLE_SIZE = 4096;
+  private static final int MAX_SYMBOL_LENGTH = 64;
+
+  private final SerializerRegistry serializers = new SerializerRegistry(
+      StandardSerializers.INTEGER,
+      StandardSerializers.LONG,
+      StandardSerializers.BIG_INTEGER,
+      StandardSerializers.FLOAT,
+      StandardSerializers.DOUBLE,
+      StandardSerializers.BIG_DECIMAL,
+      StandardSerializers.BOOLEAN,
+      StandardSerializers.STRING);
   private final ObjectFactoryCache factoryCache = new ObjectFactoryCache();
+  private final SymbolTable symbols = new SymbolTable(SYMBOL_TABLE_SIZE, MAX_SYMBOL_LENGTH);
   private int indentFactor = 0;
-
-  public AbstractSerializationService() {
-    registerSerializer(StandardSerializers.INTEGER);
-    registerSerializer(StandardSerializers.LONG);
-    registerSerializer(StandardSerializers.BIG_INTEGER);
-    registerSerializer(StandardSerializers.FLOAT);
-    registerSerializer(StandardSerializers.DOUBLE);
-    registerSerializer(StandardSerializers.BIG_DECIMAL);
-    registerSerializer(StandardSerializers.BOOLEAN);
-    registerSerializer(StandardSerializers.STRING);
-  }
+  private boolean serializeDirectly = false;
 
   @Override
   public Object deserialize(final InputStream stream)
@@ -44,19 +77,120 @@ public abstract class AbstractSerializationService implements SerializationServi
     return deserialize(new InputStreamReader(stream, "UTF-8"), expectedType);
   }
 
+  /**
+   * Reads the remaining bytes of the buffer, heap or direct, as UTF-8 without copying them into an array or String,
+   * leaving its position at its limit.
+   */
+  @Override
+  public <T> T deserialize(
+      final ByteBuffer buffer,
+      final Class<T> expectedType) throws DeserializationException {
+    try {
+      return deserialize(new ByteBufferReader(buffer), expectedType);
+    } catch (final IOException impossible) {
+      throw new DeserializationException(impossible);
+    }
+  }
+
+  @Override
+  public <T> T deserialize(
+      final ReadableByteChannel channel,
+      final Class<T> expectedType)
+      throws DeserializationException, IOException {
+    final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    return deserialize(Channels.newReader(channel, decoder, -1), expectedType);
+  }
+
+  /**
+   * Parses straight from the reader, so the input is never held in full. If it can't be parsed, the exception shows
+   * where, along with the last few hundred chars read rather than the whole input.
+   */
   @Override
   public <T> T deserialize(
       final Reader reader,
       final Class<T> expectedType)
       throws DeserializationException, IOException {
-    try (BufferedReader buffer = new BufferedReader(reader)) {
-      final StringBuilder result = new StringBuilder();
-      for (String line = buffer.readLine(); line != null; line = buffer.readLine()) {
-        result.append(line);
-        result.append('\n');
+    try (Reader source = reader) {
+      if (serializers.forType(expectedType) != null) {
+        return deserialize(readFully(source), expectedType);
+      }
+      final JSONTokener tokener = newTokener(source);
+      try {
+        return deserializeObject(new JsonParser(tokener), expectedType);
+      } catch (JSONException | IllegalArgumentException e) {
+        throw parseFailure(tokener, e);
+      }
+    }
+  }
+
+  /**
+   * The exception for input that a tokener couldn't parse: the IOException if it was the reading that failed, or else
+   * one that shows where, along with the last few hundred chars read.
+   */
+  DeserializationException parseFailure(
+      final JSONTokener tokener,
+      final RuntimeException e) throws IOException {
+    final IOException readFailure = readFailure(e);
+    if (readFailure != null) {
+      throw readFailure;
+    }
+    return new DeserializationException("Failed to parse JSON" + tokener + ", after:\n"
+        + tokener.recentInput(ERROR_CONTEXT_CHARS), e);
+  }
+
+  /**
+   * The IOException a read failed with, however many times it has been wrapped on its way out of nested DTOs, or null.
+   */
+  static IOException readFailure(final Throwable e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof IOException) {
+        return (IOException) t;
       }
-      return deserialize(result.toString(), expectedType);
     }
+    return null;
+  }
+
+  @Override
+  public <T> DocumentIterator<T> readAll(
+      final InputStream stream,
+      final Class<T> expectedType) {
+    return readAll(new InputStreamReader(stream, StandardCharsets.UTF_8), expectedType);
+  }
+
+  @Override
+  public <T> DocumentIterator<T> readAll(
+      final Reader reader,
+      final Class<T> expectedType) {
+    return new DocumentIterator<>(this, reader, newTokener(reader), expectedType);
+  }
+
+  @Override
+  public <T> PushParser<T> newPushParser(
+      final Class<T> expectedType,
+      final DocumentHandler<? super T> handler) {
+    return new PushParser<>(this, expectedType, handler);
+  }
+
+  @Override
+  public <T> void readAll(
+      final Path file,
+      final Class<T> expectedType,
+      final ForkJoinPool pool,
+      final boolean ordered,
+      final DocumentHandler<? super T> handler)
+      throws DeserializationException, IOException {
+    new ParallelFileReader<>(this, file, expectedType, handler).read(pool, ordered);
+  }
+
+  private static String readFully(final Reader reader) throws IOException {
+    final StringBuilder result = new StringBuilder();
+    final char[] buffer = new char[4096];
+    for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+      result.append(buffer, 0, read);
+    }
+    return result.toString();
   }
 
   @Override
@@ -70,16 +204,62 @@ public abstract class AbstractSerializationService implements SerializationServi
       final Class<T> expectedType) throws DeserializationException {
 
     try {
-      if (serializers.containsKey(expectedType)) {
-        return (T) serializers.get(expectedType).fromString(serialized);
+      final Serializer<T> serializer = serializers.forType(expectedType);
+      if (serializer != null) {
+        return serializer.fromString(serialized);
       } else {
-        return deserialize(new JSONObject(serialized), expectedType);
+        return deserializeObject(new JsonParser(newTokener(serialized)), expectedType);
       }
     } catch (JSONException | IllegalArgumentException e) {
       throw new DeserializationException("Failed to parse JSON string:\n" + serialized, e);
     }
   }
 
+  JSONTokener newTokener(final String source) {
+    final JSONTokener tokener = new JSONTokener(source);
+    tokener.setSymbolTable(symbols);
+    return tokener;
+  }
+
+  JSONTokener newTokener(final Reader source) {
+    final JSONTokener tokener = new JSONTokener(source);
+    tokener.setSymbolTable(symbols);
+    return tokener;
+  }
+
+  private <T> T deserializeObject(
+      final JsonParser in,
+      final Class<T> expectedType) throws DeserializationException {
+    if (!in.nextIsObject()) {
+      throw in.getTokener().syntaxError("A JSONObject text must begin with '{'");
+    }
+    return deserialize(in, expectedType);
+  }
+
+  /**
+   * Reads the next value from the parser as the expected type. A DTO whose serializedType comes first, as it does in
+   * everything this library writes, is bound straight from the tokens; any other object is read into a JSONObject and
+   * deserialized from that.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T deserialize(
+      final JsonParser in,
+      final Class<T> expectedType) throws DeserializationException {
+    if (serializers.forType(expectedType) != null || !in.nextIsObject()) {
+      return deserialize(in.nextValue(), expectedType);
+    }
+    in.beginObject();
+    final String firstName = in.firstName();
+    if (!SERIALIZED_TYPE.equals(firstName)) {
+      return deserialize(in.finishObject(firstName), expectedType);
+    }
+    final String serializedType = in.nextString();
+    if (serializedType == null) {
+      throw new JSONException("JSONObject[\"serializedType\"] not a string.");
+    }
+    return (T) factoryCache.getFactory(serializedType).createDTO(this, in);
+  }
+
   @Override
   public Object deserialize(final JSONObject json) throws DeserializationException {
     return deserialize(json, Object.class);
@@ -93,11 +273,12 @@ public abstract class AbstractSerializationService implements SerializationServi
     if (object.equals(JSONObject.NULL)) {
       return null;
     }
-    if (serializers.containsKey(expectedType)) {
+    final Serializer<T> serializer = serializers.forType(expectedType);
+    if (serializer != null) {
       if (object instanceof String) {
-        return (T) serializers.get(expectedType).fromString((String) object);
+        return serializer.fromString((String) object);
       } else if (object instanceof JSONObject) {
-        return (T) serializers.get(expectedType).fromJSONObject((JSONObject) object);
+        return serializer.fromJSONObject((JSONObject) object);
       } else {
         throw new DeserializationException(
             "Attempt to deserialize from unexpected type: " + object.getClass() + ": " + object);
@@ -113,7 +294,7 @@ public abstract class AbstractSerializationService implements SerializationServi
 
     final JSONObject jsonObject = (JSONObject) object;
     final String serializedType = jsonObject.getString("serializedType");
-    final ObjectFactory factory = factoryCache.getFactory(serializedType);
+    final ObjectFactory<?> factory = factoryCache.getFactory(serializedType);
     final DTO dto = factory.createDTO(this, jsonObject);
     try {
       return (T) dto;
@@ -132,11 +313,12 @@ public abstract class AbstractSerializationService implements SerializationServi
     } else if (Enum.class.isAssignableFrom(obj.getClass())) {
       return ((Enum) obj).name();
     } else {
-      if (!serializers.containsKey(obj.getClass())) {
+      final Serializer<Object> serializer = serializers.forValueOf(obj.getClass());
+      if (serializer == null) {
         throw new SerializationError(
             "Object is not Serializable and no custom serializer registered for type " + obj.getClass());
       }
-      return serializers.get(obj.getClass()).toJson(obj);
+      return serializer.toJson(obj);
     }
   }
 
@@ -144,7 +326,9 @@ public abstract class AbstractSerializationService implements SerializationServi
   public void write(
       final Serializable obj,
       final OutputStream out) throws IOException {
-    out.write(serialize(obj).getBytes("UTF-8"));
+    final Writer writer = new Utf8Writer(out);
+    writeTo(obj, new JsonGenerator(writer, indentFactor));
+    writer.flush();
   }
 
   @Override
@@ -153,7 +337,219 @@ public abstract class AbstractSerializationService implements SerializationServi
       final Class<T> interfaceType,
       final OutputStream out)
       throws SerializationError, IOException {
-    out.write(serialize(obj, interfaceType).getBytes("UTF-8"));
+    final Writer writer = new Utf8Writer(out);
+    writeTo(obj, interfaceType, new JsonGenerator(writer, indentFactor));
+    writer.flush();
+  }
+
+  /**
+   * Writes at the buffer's position, advancing it past what was written. If the object doesn't fit, throws
+   * BufferOverflowException and leaves the position where it was.
+   */
+  @Override
+  public <T extends Serializable> void write(
+      final T obj,
+      final Class<T> interfaceType,
+      final ByteBuffer out) throws SerializationError {
+    final int start = out.position();
+    try {
+      write(obj, interfaceType, new ByteBufferOutputStream(out));
+    } catch (final BufferOverflowException e) {
+      out.position(start);
+      throw e;
+    } catch (final IOException impossible) {
+      throw new SerializationError(impossible);
+    }
+  }
+
+  @Override
+  public <T extends Serializable> void write(
+      final T obj,
+      final Class<T> interfaceType,
+      final WritableByteChannel out)
+      throws SerializationError, IOException {
+    write(obj, interfaceType, new ChannelOutputStream(out));
+  }
+
+  /**
+   * Resolves the factory once per run of elements of the same class, and converts each element in a context of its
+   * own, so nothing is kept from one element to the next.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T extends Serializable> void writeAll(
+      final Iterable<? extends T> objects,
+      final Class<T> interfaceType,
+      final OutputStream out,
+      final Format format)
+      throws SerializationError, IOException {
+    final Writer writer = new Utf8Writer(out);
+    JsonGenerator generator = new JsonGenerator(writer, indentFactor);
+    if (format == Format.JSON_ARRAY) {
+      generator.array();
+    }
+    Class<?> factoryClass = null;
+    ObjectFactory<? super T> factory = null;
+    int written = 0;
+    for (final T obj : objects) {
+      if (format == Format.NDJSON) {
+        generator = new JsonGenerator(writer, 0);
+      }
+      if (obj == null) {
+        generator.nullValue();
+      } else {
+        if (obj.getClass() != factoryClass) {
+          factory = factoryCache.getFactory(obj, interfaceType);
+          factoryClass = obj.getClass();
+        }
+        if (serializeDirectly) {
+          factory.write(new SerializationContext(this), obj, generator);
+        } else {
+          factory.createDTO(new SerializationContext(this), obj).writeTo(generator);
+        }
+      }
+      if (format == Format.NDJSON) {
+        writer.write('\n');
+      }
+      if (++written % WRITE_ALL_FLUSH_INTERVAL == 0) {
+        writer.flush();
+      }
+    }
+    if (format == Format.JSON_ARRAY) {
+      generator.endArray();
+    }
+    writer.flush();
+  }
+
+  @Override
+  public byte[] toBytes(final Serializable obj) throws SerializationError {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      write(obj, out);
+    } catch (final IOException impossible) {
+      throw new SerializationError(impossible);
+    }
+    return out.toByteArray();
+  }
+
+  @Override
+  public <T extends Serializable> byte[] toBytes(
+      final T obj,
+      final Class<T> interfaceType) throws SerializationError {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      write(obj, interfaceType, out);
+    } catch (final IOException impossible) {
+      throw new SerializationError(impossible);
+    }
+    return out.toByteArray();
+  }
+
+  private void writeTo(
+      final Serializable obj,
+      final JsonGenerator out) throws IOException {
+    if (serializeDirectly) {
+      factoryCache.getFactory(obj).write(new SerializationContext(this), obj, out);
+    } else {
+      createDTO(obj).writeTo(out);
+    }
+  }
+
+  private <T extends Serializable> void writeTo(
+      final T obj,
+      final Class<T> interfaceType,
+      final JsonGenerator out) throws IOException {
+    if (serializeDirectly) {
+      new SerializationContext(this).write(obj, interfaceType, out);
+    } else {
+      createDTO(obj, interfaceType).writeTo(out);
+    }
+  }
+
+  /**
+   * Resolves everything the first (de)serialization of each of the given GenerateDTO interfaces would, so that the
+   * first requests after startup don't pay for it. Factories are shared by every service, so this warms them all.
+   */
+  public void warmUp(final Collection<? extends Class<? extends Serializable>> generatableInterfaces)
+      throws DeserializationException {
+    for (final Class<? extends Serializable> generatableInterface : generatableInterfaces) {
+      factoryCache.warmUp(generatableInterface);
+    }
+  }
+
+  /**
+   * As warmUp(generatableInterfaces), and then writes and reads back an instance of each interface, built by a
+   * TestInstanceGenerator, the given number of times, so that the JIT has compiled its codec before real traffic
+   * arrives. Interfaces the generator can't build an instance of are only resolved, and returned.
+   */
+  public Set<Class<? extends Serializable>> warmUp(
+      final Collection<? extends Class<? extends Serializable>> generatableInterfaces,
+      final int roundTrips) throws DeserializationException {
+    warmUp(generatableInterfaces);
+    final TestInstanceGenerator generator = new TestInstanceGenerator();
+    final Set<Class<? extends Serializable>> skipped = new LinkedHashSet<>();
+    for (final Class<? extends Serializable> generatableInterface : generatableInterfaces) {
+      if (!roundTrip(generator, generatableInterface, roundTrips)) {
+        skipped.add(generatableInterface);
+      }
+    }
+    return skipped;
+  }
+
+  /**
+   * The GenerateDTO interfaces listed by every module's generated TypeRegistry, for warming them all up.
+   */
+  public Set<Class<? extends Serializable>> getRegisteredTypes() {
+    return factoryCache.getRegisteredInterfaces();
+  }
+
+  /**
+   * Resolves serializedType names and type ids, and finds generated registries, in the given class loader rather than
+   * the one detox was loaded by: for a service that reads the types of a plugin or tenant with a loader of its own.
+   * The service holds the loader only weakly, and goes back to detox's own when it is evicted or has gone.
+   */
+  public void setClassLoader(final ClassLoader classLoader) {
+    factoryCache.setClassLoader(classLoader);
+  }
+
+  /**
+   * Forgets everything cached about the classes of a class loader that is being discarded, both by this service and by
+   * the factory caches every service shares, so that none of it keeps the loader's classes alive. The shared caches
+   * only refer to classes weakly, so this just lets them go sooner; the serializers this service has found for each
+   * class are only forgotten here. Every service that was using the loader goes back to the one detox was loaded by.
+   */
+  public void evict(final ClassLoader classLoader) {
+    ObjectFactoryCache.evict(classLoader);
+    serializers.forgetResolved();
+  }
+
+  /**
+   * Returns false, having done nothing, if the generator can't build an instance of the interface: there is no builder,
+   * no value generator for one of its members, or the builder's checks or validators reject a generated value.
+   */
+  private <T extends Serializable> boolean roundTrip(
+      final TestInstanceGenerator generator,
+      final Class<T> generatableInterface,
+      final int times) throws DeserializationException {
+    final T instance;
+    try {
+      instance = generator.generate(generatableInterface);
+    } catch (final ClassNotFoundException | InstanceGenerationException e) {
+      return false;
+    } catch (final InvocationTargetException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        return false;
+      }
+      throw new IllegalStateException("Failed to generate an instance of " + generatableInterface, e);
+    } catch (final Exception e) {
+      throw new IllegalStateException("Failed to generate an instance of " + generatableInterface, e);
+    }
+    for (int i = 0; i < times; ++i) {
+      final String serialized = serialize(instance, generatableInterface);
+      final T read = deserialize(serialized, generatableInterface);
+      deserialize(ByteBuffer.wrap(toBytes(read, generatableInterface)), generatableInterface);
+    }
+    return true;
   }
 
   public void setPrettyPrint() {
@@ -164,12 +560,31 @@ public abstract class AbstractSerializationService implements SerializationServi
     indentFactor = 0;
   }
 
+  /**
+   * Makes serialize, write and toBytes read each object's getters as they write, rather than first copying the whole
+   * graph into DTOs. The output is the same, but the copy is what makes it a consistent snapshot: only use this where
+   * the objects being serialized can't change while they're being written.
+   */
+  public void setSerializeDirectly() {
+    serializeDirectly = true;
+  }
+
+  public void setSerializeViaDTOs() {
+    serializeDirectly = false;
+  }
+
   @Override
   public <T extends Serializable> String serialize(
       final T obj,
       final Class<T> interfaceType)
       throws SerializationError {
-    return createJSONObject(obj, interfaceType).toString(indentFactor);
+    final StringWriter writer = new StringWriter();
+    try {
+      writeTo(obj, interfaceType, new JsonGenerator(writer, indentFactor));
+    } catch (final IOException impossible) {
+      throw new SerializationError(impossible);
+    }
+    return writer.toString();
   }
 
   @Override
@@ -182,9 +597,42 @@ public abstract class AbstractSerializationService implements SerializationServi
   public <T extends Serializable> DTO createDTO(
       final T obj,
       final Class<T> clazz) {
-    return factoryCache.getFactory(obj, clazz).createDTO(this, obj);
+    return new SerializationContext(this).createDTO(obj, clazz);
+  }
+
+  <T extends Serializable> ObjectFactory<? super T> getFactory(
+      final T obj,
+      final Class<T> bound) {
+    return factoryCache.getFactory(obj, bound);
   }
 
+  ObjectFactory<?> getFactory(final String serializedType) throws DeserializationException {
+    return factoryCache.getFactory(serializedType);
+  }
+
+  /**
+   * Writes the object with a factory already resolved for it.
+   */
+  <T extends Serializable> void writeWith(
+      final ObjectFactory<? super T> factory,
+      final T obj,
+      final Writer writer) throws IOException {
+    final JsonGenerator out = new JsonGenerator(writer, indentFactor);
+    if (serializeDirectly) {
+      factory.write(new SerializationContext(this), obj, out);
+    } else {
+      factory.createDTO(new SerializationContext(this), obj).writeTo(out);
+    }
+  }
+
+  /**
+   * Resolves the type's factory up front, if it is a GenerateDTO interface, rather than on every call. Any interface
+   * may be given, as it may be as the bound of serialize.
+   */
+  @Override
+  public <T extends Serializable> Codec<T> codecFor(final Class<T> type) {
+    return new Codec<>(this, type, type.isAnnotationPresent(GenerateDTO.class) ? factoryCache.getFactory(type) : null);
+  }
 
   /**
    * Given a Serializable object and no hint from the caller as to what type it should be serialized as, we need to
@@ -192,7 +640,13 @@ public abstract class AbstractSerializationService implements SerializationServi
    */
   @Override
   public String serialize(final Serializable obj) throws SerializationError {
-    return createJSONObject(obj).toString(indentFactor);
+    final StringWriter writer = new StringWriter();
+    try {
+      writeTo(obj, new JsonGenerator(writer, indentFactor));
+    } catch (final IOException impossible) {
+      throw new SerializationError(impossible);
+    }
+    return writer.toString();
   }
 
   public JSONObject createJSONObject(final Serializable obj) {
@@ -201,11 +655,15 @@ public abstract class AbstractSerializationService implements SerializationServi
 
   @SuppressWarnings("unchecked")
   public DTO createDTO(final Serializable obj) {
-    return factoryCache.getFactory(obj).createDTO(this, obj);
+    return factoryCache.getFactory(obj).createDTO(new SerializationContext(this), obj);
   }
 
+  /**
+   * Serializers may be registered at any time, including while other threads are using the service. A serializer
+   * writes values of its target type and its subtypes, and reads values of exactly its target type.
+   */
   protected final void registerSerializer(final Serializer<?> serializer) {
-    serializers.put(serializer.getTargetType(), serializer);
+    serializers.register(serializer);
   }
 
   public interface Serializer<T> {
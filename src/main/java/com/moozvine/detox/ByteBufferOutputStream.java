@@ -0,0 +1,28 @@
+package com.moozvine.detox;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes into a ByteBuffer, heap or direct, at its position. Writing past its limit throws BufferOverflowException.
+ */
+final class ByteBufferOutputStream extends OutputStream {
+  private final ByteBuffer buffer;
+
+  ByteBufferOutputStream(final ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public void write(final int b) {
+    buffer.put((byte) b);
+  }
+
+  @Override
+  public void write(
+      final byte[] bytes,
+      final int offset,
+      final int length) {
+    buffer.put(bytes, offset, length);
+  }
+}
@@ -0,0 +1,67 @@
+package com.moozvine.detox;
+
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the UTF-8 encoded bytes remaining in a ByteBuffer, such as a memory-mapped region of a file, decoding them
+ * straight into the caller's chars as they are asked for. Malformed input is replaced, as InputStreamReader replaces
+ * it.
+ */
+final class ByteBufferReader extends Reader {
+  private final ByteBuffer bytes;
+  private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  /**
+   * The low half of a surrogate pair that was decoded when there was room for only the high half.
+   */
+  private final CharBuffer pending = CharBuffer.allocate(2);
+  private boolean flushed = false;
+
+  ByteBufferReader(final ByteBuffer bytes) {
+    this.bytes = bytes;
+    pending.flip();
+  }
+
+  @Override
+  public int read(
+      final char[] buffer,
+      final int offset,
+      final int length) {
+    if (length == 0) {
+      return 0;
+    }
+    if (pending.hasRemaining()) {
+      buffer[offset] = pending.get();
+      return 1;
+    }
+    if (flushed) {
+      return -1;
+    }
+    final CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+    decoder.decode(bytes, out, true);
+    if (out.position() == offset && bytes.hasRemaining()) {
+      // Only a surrogate pair is left to decode, and there is room for just one of its chars.
+      pending.clear();
+      decoder.decode(bytes, pending, true);
+      pending.flip();
+      buffer[offset] = pending.get();
+      return 1;
+    }
+    if (!bytes.hasRemaining()) {
+      flushed = decoder.flush(out).isUnderflow();
+    }
+    final int read = out.position() - offset;
+    return read == 0 && flushed ? -1 : read;
+  }
+
+  @Override
+  public void close() {
+  }
+}
@@ -0,0 +1,100 @@
+package com.moozvine.detox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes to a channel in blocking mode. What is written is collected in a list of fixed-size segments rather than one
+ * growing array, and on flush, or once the list is full, the segments go to the channel together in a single
+ * gathering write if it supports one. Closing this stream flushes it but leaves the channel open.
+ * <p>
+ * A channel in non-blocking mode would accept nothing while it is full, and the writes would spin; flushing to one
+ * throws IllegalBlockingModeException instead, as the streams of Channels do.
+ */
+final class ChannelOutputStream extends OutputStream {
+  private static final int SEGMENT_SIZE = 8192;
+  private static final int MAX_SEGMENTS = 64;
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer[] segments = new ByteBuffer[MAX_SEGMENTS];
+
+  /**
+   * The number of segments holding output, the last of which may have room for more.
+   */
+  private int used;
+
+  ChannelOutputStream(final WritableByteChannel channel) {
+    this.channel = channel;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    segmentWithRoom().put((byte) b);
+  }
+
+  @Override
+  public void write(
+      final byte[] bytes,
+      final int offset,
+      final int length) throws IOException {
+    int written = 0;
+    while (written < length) {
+      final ByteBuffer segment = segmentWithRoom();
+      final int chunk = Math.min(length - written, segment.remaining());
+      segment.put(bytes, offset + written, chunk);
+      written += chunk;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (used == 0) {
+      return;
+    }
+    if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+      throw new IllegalBlockingModeException();
+    }
+    for (int i = 0; i < used; ++i) {
+      segments[i].flip();
+    }
+    if (channel instanceof GatheringByteChannel) {
+      final GatheringByteChannel gathering = (GatheringByteChannel) channel;
+      while (segments[used - 1].hasRemaining()) {
+        gathering.write(segments, 0, used);
+      }
+    } else {
+      for (int i = 0; i < used; ++i) {
+        while (segments[i].hasRemaining()) {
+          channel.write(segments[i]);
+        }
+      }
+    }
+    for (int i = 0; i < used; ++i) {
+      segments[i].clear();
+    }
+    used = 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+  }
+
+  private ByteBuffer segmentWithRoom() throws IOException {
+    if (used > 0 && segments[used - 1].hasRemaining()) {
+      return segments[used - 1];
+    }
+    if (used == MAX_SEGMENTS) {
+      flush();
+    }
+    if (segments[used] == null) {
+      segments[used] = ByteBuffer.allocate(SEGMENT_SIZE);
+    }
+    return segments[used++];
+  }
+}
@@ -0,0 +1,174 @@
+package com.moozvine.detox;
+
+import com.moozvine.detox.repackaged.org.json.JSONException;
+import com.moozvine.detox.repackaged.org.json.JSONTokener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes and reads one type with the factories already resolved for it, for endpoints that handle the same type on
+ * every request and can hold the codec in a field. Reading a document of exactly that type, whether it is named by its
+ * interface or its typeId, takes the type's own factory without looking it up; writing an object of the same class as
+ * the last one written takes the factory that was used for that. Anything else is resolved as the service would.
+ * <p>
+ * Custom serializers aren't consulted for the type itself, only for its members. A codec follows the service's pretty
+ * print and serialize directly settings, and may be shared by any number of threads.
+ */
+public final class Codec<T extends Serializable> {
+  private static final String SERIALIZED_TYPE = "serializedType";
+
+  private final AbstractSerializationService service;
+  private final Class<T> type;
+
+  /**
+   * The factory of the type, and the serializedType values that name it, if the type is a GenerateDTO interface.
+   */
+  private final ObjectFactory<T> factory;
+  private final String typeName;
+  private final String typeId;
+
+  private volatile Resolved<T> last = new Resolved<>(null, null);
+
+  private static final class Resolved<T extends Serializable> {
+    final Class<?> objectClass;
+    final ObjectFactory<? super T> factory;
+
+    Resolved(
+        final Class<?> objectClass,
+        final ObjectFactory<? super T> factory) {
+      this.objectClass = objectClass;
+      this.factory = factory;
+    }
+  }
+
+  Codec(
+      final AbstractSerializationService service,
+      final Class<T> type,
+      final ObjectFactory<T> factory) {
+    this.service = service;
+    this.type = type;
+    this.factory = factory;
+    final GenerateDTO annotation = type.getAnnotation(GenerateDTO.class);
+    this.typeName = factory == null ? null : type.getName();
+    this.typeId = annotation == null || annotation.typeId().isEmpty() ? null : annotation.typeId();
+  }
+
+  public Class<T> getType() {
+    return type;
+  }
+
+  public String serialize(final T obj) throws SerializationError {
+    final StringWriter writer = new StringWriter();
+    try {
+      write(obj, writer);
+    } catch (final IOException impossible) {
+      throw new SerializationError(impossible);
+    }
+    return writer.toString();
+  }
+
+  public byte[] toBytes(final T obj) throws SerializationError {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      write(obj, out);
+    } catch (final IOException impossible) {
+      throw new SerializationError(impossible);
+    }
+    return out.toByteArray();
+  }
+
+  public void write(
+      final T obj,
+      final OutputStream out) throws SerializationError, IOException {
+    final Writer writer = new Utf8Writer(out);
+    write(obj, writer);
+    writer.flush();
+  }
+
+  private void write(
+      final T obj,
+      final Writer writer) throws IOException {
+    service.writeWith(factoryFor(obj), obj, writer);
+  }
+
+  private ObjectFactory<? super T> factoryFor(final T obj) {
+    final Resolved<T> resolved = last;
+    if (resolved.objectClass == obj.getClass()) {
+      return resolved.factory;
+    }
+    final ObjectFactory<? super T> result = service.getFactory(obj, type);
+    last = new Resolved<>(obj.getClass(), result);
+    return result;
+  }
+
+  public T read(final String serialized) throws DeserializationException {
+    try {
+      return read(new JsonParser(service.newTokener(serialized)));
+    } catch (JSONException | IllegalArgumentException e) {
+      throw new DeserializationException("Failed to parse JSON string:\n" + serialized, e);
+    }
+  }
+
+  public T read(final byte[] bytes) throws DeserializationException {
+    return read(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Reads the remaining bytes of the buffer as UTF-8, leaving its position at its limit.
+   */
+  public T read(final ByteBuffer buffer) throws DeserializationException {
+    try {
+      return read(new ByteBufferReader(buffer));
+    } catch (final IOException impossible) {
+      throw new DeserializationException(impossible);
+    }
+  }
+
+  public T read(final InputStream stream) throws DeserializationException, IOException {
+    return read(new InputStreamReader(stream, StandardCharsets.UTF_8));
+  }
+
+  private T read(final Reader reader) throws DeserializationException, IOException {
+    try (Reader source = reader) {
+      final JSONTokener tokener = service.newTokener(source);
+      try {
+        return read(new JsonParser(tokener));
+      } catch (JSONException | IllegalArgumentException e) {
+        throw service.parseFailure(tokener, e);
+      }
+    }
+  }
+
+  private T read(final JsonParser in) throws DeserializationException {
+    if (!in.nextIsObject()) {
+      throw in.getTokener().syntaxError("A JSONObject text must begin with '{'");
+    }
+    in.beginObject();
+    final String firstName = in.firstName();
+    if (!SERIALIZED_TYPE.equals(firstName)) {
+      return service.deserialize(in.finishObject(firstName), type);
+    }
+    final String serializedType = in.nextString();
+    if (serializedType == null) {
+      throw new JSONException("JSONObject[\"serializedType\"] not a string.");
+    }
+    final ObjectFactory<?> documentFactory = serializedType.equals(typeName) || serializedType.equals(typeId)
+        ? factory
+        : service.getFactory(serializedType);
+    final DTO dto = documentFactory.createDTO(service, in);
+    if (!type.isInstance(dto)) {
+      throw new DeserializationException("Deserialized object of type " + serializedType
+          + " (" + dto.getClass() + ") could not be cast to " + type);
+    }
+    return type.cast(dto);
+  }
+}
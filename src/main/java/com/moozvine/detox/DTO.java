@@ -2,6 +2,13 @@ package com.moozvine.detox;
 
 import com.moozvine.detox.repackaged.org.json.JSONObject;
 
+import java.io.IOException;
+
 public interface DTO {
   JSONObject toJson();
+
+  /**
+   * Streams this DTO's serial form to the given generator without building a JSONObject.
+   */
+  void writeTo(JsonGenerator out) throws IOException;
 }
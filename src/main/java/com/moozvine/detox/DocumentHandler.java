@@ -0,0 +1,8 @@
+package com.moozvine.detox;
+
+/**
+ * Receives the documents read by SerializationService.readAll from a file.
+ */
+public interface DocumentHandler<T> {
+  void handle(T document);
+}
@@ -0,0 +1,92 @@
+package com.moozvine.detox;
+
+import com.moozvine.detox.repackaged.org.json.JSONException;
+import com.moozvine.detox.repackaged.org.json.JSONTokener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Deserializes a sequence of JSON documents from a Reader one at a time, as they are asked for. The documents may be
+ * one per line, as in NDJSON, or simply one after another, with or without whitespace between them. Only the document
+ * being read is held in memory, however long the input.
+ * <p>
+ * Iterator methods can't throw checked exceptions, so a document that can't be deserialized fails with an
+ * IllegalArgumentException whose cause is the DeserializationException, and a failure to read the input with one whose
+ * cause is the IOException. The reader is closed once the last document has been read, or on close().
+ */
+public final class DocumentIterator<T> implements Iterator<T>, Closeable {
+  private final AbstractSerializationService service;
+  private final Reader reader;
+  private final JSONTokener tokener;
+  private final JsonParser parser;
+  private final Class<T> expectedType;
+  private boolean closed = false;
+
+  DocumentIterator(
+      final AbstractSerializationService service,
+      final Reader reader,
+      final JSONTokener tokener,
+      final Class<T> expectedType) {
+    this.service = service;
+    this.reader = reader;
+    this.tokener = tokener;
+    this.parser = new JsonParser(tokener);
+    this.expectedType = expectedType;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (closed) {
+      return false;
+    }
+    try {
+      if (tokener.nextClean() != 0) {
+        tokener.back();
+        return true;
+      }
+      close();
+      return false;
+    } catch (final JSONException e) {
+      throw new IllegalArgumentException(e.getCause() != null ? e.getCause() : e);
+    } catch (final IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    try {
+      return service.deserialize(parser, expectedType);
+    } catch (final DeserializationException e) {
+      throw new IllegalArgumentException(e.getMessage(), e);
+    } catch (final JSONException | IllegalArgumentException e) {
+      final Throwable cause;
+      try {
+        cause = service.parseFailure(tokener, e);
+      } catch (final IOException readFailure) {
+        throw new IllegalArgumentException(readFailure);
+      }
+      throw new IllegalArgumentException(cause.getMessage(), cause);
+    }
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      reader.close();
+    }
+  }
+}
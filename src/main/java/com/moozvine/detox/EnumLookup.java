@@ -0,0 +1,79 @@
+package com.moozvine.detox;
+
+import com.moozvine.detox.repackaged.org.json.JSONTokener;
+
+/**
+ * The constants of an enum by name, for generated DTOs to decode enum values with. Constants are found straight from
+ * the chars of a token as the parser reads them, so no String is made for them, or from a String by its cached hash
+ * code, rather than by Enum.valueOf's map lookup.
+ */
+public final class EnumLookup<E extends Enum<E>> implements JSONTokener.CharLookup<E> {
+  private final Class<E> type;
+  private final String[] names;
+  private final E[] constants;
+  private final int mask;
+
+  @SuppressWarnings("unchecked")
+  public EnumLookup(final Class<E> type) {
+    this.type = type;
+    final E[] values = type.getEnumConstants();
+    final int size = Integer.highestOneBit(Math.max(values.length, 1) * 2) << 1;
+    names = new String[size];
+    constants = (E[]) new Enum<?>[size];
+    mask = size - 1;
+    for (final E value : values) {
+      int slot = slotFor(value.name().hashCode());
+      while (names[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      names[slot] = value.name();
+      constants[slot] = value;
+    }
+  }
+
+  /**
+   * As Enum.valueOf: throws IllegalArgumentException if there is no constant with the given name.
+   */
+  public E valueOf(final String name) {
+    for (int slot = slotFor(name.hashCode()); names[slot] != null; slot = (slot + 1) & mask) {
+      if (names[slot].equals(name)) {
+        return constants[slot];
+      }
+    }
+    return Enum.valueOf(type, name);
+  }
+
+  @Override
+  public E lookup(final char[] chars, final int offset, final int length) {
+    int hash = 0;
+    for (int i = offset; i < offset + length; ++i) {
+      hash = 31 * hash + chars[i];
+    }
+    for (int slot = slotFor(hash); names[slot] != null; slot = (slot + 1) & mask) {
+      if (matches(names[slot], chars, offset, length)) {
+        return constants[slot];
+      }
+    }
+    return null;
+  }
+
+  private int slotFor(final int hash) {
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private static boolean matches(
+      final String name,
+      final char[] chars,
+      final int offset,
+      final int length) {
+    if (name.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; ++i) {
+      if (name.charAt(i) != chars[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
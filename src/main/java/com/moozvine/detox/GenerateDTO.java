@@ -8,4 +8,11 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE) @Retention(RetentionPolicy.RUNTIME)
 public @interface GenerateDTO {
   Class<? extends InstanceValidator> validator() default InstanceValidator.class;
+
+  /**
+   * A short, stable id to write as the serializedType of this interface in place of its fully qualified name. Ids
+   * must be unique across everything a service may deserialize; the processor records them in
+   * META-INF/detox/type-ids.properties so that they can be resolved without a class name.
+   */
+  String typeId() default "";
 }
@@ -0,0 +1,12 @@
+package com.moozvine.detox;
+
+/**
+ * Thrown by TestInstanceGenerator when it has no value generator for the type of a member.
+ */
+public class InstanceGenerationException extends IllegalArgumentException {
+  private static final long serialVersionUID = 1L;
+
+  public InstanceGenerationException(final String message) {
+    super(message);
+  }
+}
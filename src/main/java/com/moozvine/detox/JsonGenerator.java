@@ -0,0 +1,281 @@
+package com.moozvine.detox;
+
+import com.moozvine.detox.repackaged.org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streams JSON text straight to a Writer as a DTO is walked, rather than building a JSONObject tree and rendering it
+ * afterwards. Modelled on JSONWriter, but it honours the service's indent factor and skips JSONWriter's per-key
+ * duplicate checking: generated DTOs never repeat a key, so the calls are trusted to be well-sequenced.
+ */
+public final class JsonGenerator {
+  private static final char[] SERIALIZED_TYPE_KEY = "\"serializedType\":".toCharArray();
+
+  /**
+   * Doubles whose shortest round-trip form has more significant digits than this are left to
+   * JSONObject.numberToString. Below it, a decimal that round-trips is the only one of its length that does.
+   */
+  private static final long MAX_SHORT_DECIMAL = 1000000000000000L;
+
+  private static final long[] LONG_POWERS_OF_TEN = new long[19];
+  private static final double[] DOUBLE_POWERS_OF_TEN = new double[19];
+
+  static {
+    long power = 1;
+    for (int i = 0; i < LONG_POWERS_OF_TEN.length; ++i) {
+      LONG_POWERS_OF_TEN[i] = power;
+      DOUBLE_POWERS_OF_TEN[i] = power;
+      power *= 10;
+    }
+  }
+
+  private final Writer writer;
+  private final int indentFactor;
+  private int indent;
+  private int depth;
+
+  /**
+   * Scratch space that numbers are formatted into, right-aligned, so that writing one allocates nothing.
+   */
+  private final char[] digits = new char[24];
+
+  /**
+   * True if a value has already been written at the current level, so the next one needs a preceding comma.
+   */
+  private boolean comma;
+
+  /**
+   * True if a key has just been written, so the next value follows it directly.
+   */
+  private boolean afterKey;
+
+  public JsonGenerator(
+      final Writer writer,
+      final int indentFactor) {
+    this.writer = writer;
+    this.indentFactor = indentFactor;
+  }
+
+  public JsonGenerator object() throws IOException {
+    beginValue();
+    writer.write('{');
+    return open();
+  }
+
+  public JsonGenerator endObject() throws IOException {
+    return close('}');
+  }
+
+  public JsonGenerator array() throws IOException {
+    beginValue();
+    writer.write('[');
+    return open();
+  }
+
+  public JsonGenerator endArray() throws IOException {
+    return close(']');
+  }
+
+  public JsonGenerator key(final String key) throws IOException {
+    separate();
+    JSONObject.quote(key, writer);
+    writer.write(':');
+    if (indentFactor > 0) {
+      writer.write(' ');
+    }
+    afterKey = true;
+    return this;
+  }
+
+  /**
+   * Writes a key that has already been quoted and escaped, followed by its colon, e.g. the chars of
+   * <code>"name":</code>. Generated DTOs keep one of these per member so their keys aren't re-escaped on every write.
+   */
+  public JsonGenerator key(final char[] quotedKeyAndColon) throws IOException {
+    separate();
+    writer.write(quotedKeyAndColon);
+    if (indentFactor > 0) {
+      writer.write(' ');
+    }
+    afterKey = true;
+    return this;
+  }
+
+  /**
+   * Writes the serializedType member, given the already quoted and escaped type name.
+   */
+  public JsonGenerator serializedType(final char[] quotedTypeName) throws IOException {
+    key(SERIALIZED_TYPE_KEY);
+    beginValue();
+    writer.write(quotedTypeName);
+    return this;
+  }
+
+  public JsonGenerator value(final boolean value) throws IOException {
+    beginValue();
+    writer.write(value ? "true" : "false");
+    return this;
+  }
+
+  public JsonGenerator value(final long value) throws IOException {
+    beginValue();
+    final int start = formatLong(value, digits.length);
+    writer.write(digits, start, digits.length - start);
+    return this;
+  }
+
+  /**
+   * Writes the value exactly as JSONObject.numberToString would: the shortest decimal that reads back as the same
+   * double, without trailing zeros. Values in the range Double.toString prints without an exponent are formatted
+   * here; the rest fall back to numberToString.
+   *
+   * @throws com.moozvine.detox.repackaged.org.json.JSONException if the value is not finite.
+   */
+  public JsonGenerator value(final double value) throws IOException {
+    beginValue();
+    final int start = formatShortDecimal(value);
+    if (start >= 0) {
+      writer.write(digits, start, digits.length - start);
+    } else {
+      writer.write(JSONObject.numberToString(value));
+    }
+    return this;
+  }
+
+  /**
+   * Writes a value as JSONObject would render it: Strings are quoted, Numbers and Booleans are written as-is and
+   * JSONObjects and JSONArrays (e.g. from a JSONObjectSerializer) are written out in full.
+   */
+  public JsonGenerator value(final Object value) throws IOException {
+    if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+      return value(((Number) value).longValue());
+    }
+    if (value instanceof Double) {
+      return value(((Double) value).doubleValue());
+    }
+    beginValue();
+    JSONObject.writeValue(writer, value, indentFactor, indent);
+    return this;
+  }
+
+  public JsonGenerator nullValue() throws IOException {
+    beginValue();
+    writer.write("null");
+    return this;
+  }
+
+  /**
+   * Formats the value into the digits buffer so that it ends just before the given position, and returns the
+   * position it starts at. Works on the negated value so that Long.MIN_VALUE needs no special case.
+   */
+  private int formatLong(
+      final long value,
+      final int end) {
+    int position = end;
+    long remaining = value < 0 ? value : -value;
+    do {
+      digits[--position] = (char) ('0' - remaining % 10);
+      remaining /= 10;
+    } while (remaining != 0);
+    if (value < 0) {
+      digits[--position] = '-';
+    }
+    return position;
+  }
+
+  /**
+   * Formats the value into the digits buffer and returns the position it starts at, or -1 if it should be left to
+   * numberToString. The shortest decimal is found by trying one more fractional digit at a time until the scaled,
+   * rounded value divides back to exactly the original double. The scaled value is always well under 2^53 and the
+   * powers of ten are exact, so that division gives the same double that parsing the decimal would.
+   */
+  private int formatShortDecimal(final double value) {
+    final double magnitude = Math.abs(value);
+    if (magnitude == 0) {
+      int position = digits.length;
+      digits[--position] = '0';
+      if (Double.doubleToRawLongBits(value) != 0) {
+        digits[--position] = '-';
+      }
+      return position;
+    }
+    if (!(magnitude >= 1e-3 && magnitude < 1e7)) {
+      return -1;
+    }
+    for (int scale = 0; scale < DOUBLE_POWERS_OF_TEN.length; ++scale) {
+      final double scaled = Math.rint(magnitude * DOUBLE_POWERS_OF_TEN[scale]);
+      if (scaled >= MAX_SHORT_DECIMAL) {
+        return -1;
+      }
+      if (scaled / DOUBLE_POWERS_OF_TEN[scale] == magnitude) {
+        return formatDecimal((long) scaled, scale, value < 0);
+      }
+    }
+    return -1;
+  }
+
+  private int formatDecimal(
+      final long unscaled,
+      final int scale,
+      final boolean negative) {
+    int position = digits.length;
+    if (scale > 0) {
+      long fraction = unscaled % LONG_POWERS_OF_TEN[scale];
+      for (int i = 0; i < scale; ++i) {
+        digits[--position] = (char) ('0' + fraction % 10);
+        fraction /= 10;
+      }
+      digits[--position] = '.';
+    }
+    position = formatLong(unscaled / LONG_POWERS_OF_TEN[scale], position);
+    if (negative) {
+      digits[--position] = '-';
+    }
+    return position;
+  }
+
+  private JsonGenerator open() {
+    depth += 1;
+    indent += indentFactor;
+    comma = false;
+    return this;
+  }
+
+  private JsonGenerator close(final char c) throws IOException {
+    depth -= 1;
+    indent -= indentFactor;
+    if (comma) {
+      newLine();
+    }
+    writer.write(c);
+    comma = true;
+    return this;
+  }
+
+  private void beginValue() throws IOException {
+    if (afterKey) {
+      afterKey = false;
+    } else if (depth > 0) {
+      separate();
+    }
+    comma = true;
+  }
+
+  private void separate() throws IOException {
+    if (comma) {
+      writer.write(',');
+    }
+    newLine();
+  }
+
+  private void newLine() throws IOException {
+    if (indentFactor > 0) {
+      writer.write('\n');
+      for (int i = 0; i < indent; ++i) {
+        writer.write(' ');
+      }
+    }
+  }
+}
@@ -0,0 +1,272 @@
+package com.moozvine.detox;
+
+import com.moozvine.detox.repackaged.org.json.JSONException;
+import com.moozvine.detox.repackaged.org.json.JSONObject;
+import com.moozvine.detox.repackaged.org.json.JSONTokener;
+
+/**
+ * Pulls the members of a JSON text off a JSONTokener one at a time, for generated DTOs to bind straight into their
+ * fields rather than reading them back out of a JSONObject. It accepts exactly what the JSONObject and JSONArray
+ * constructors accept, and converts scalars as their getters do. Numbers read as ints, longs or doubles are parsed
+ * straight from the tokener's buffer, never as a String or a boxed Number.
+ * <p>
+ * Objects are read as {@code beginObject()}, then {@code firstName()} and {@code nextName()} until they return null,
+ * reading one value after each name. Arrays are read the same way with {@code beginArray()}, {@code firstElement()}
+ * and {@code nextElement()}.
+ */
+public final class JsonParser {
+  private final JSONTokener tokener;
+
+  /**
+   * A value that nextIsNull() had to read to find out that it wasn't null, handed out by the next read.
+   */
+  private Object pending;
+
+  public JsonParser(final JSONTokener tokener) {
+    this.tokener = tokener;
+  }
+
+  public JsonParser(final String source) {
+    this(new JSONTokener(source));
+  }
+
+  public JSONTokener getTokener() {
+    return tokener;
+  }
+
+  public void beginObject() throws JSONException {
+    if (tokener.nextClean() != '{') {
+      throw tokener.syntaxError("A JSONObject text must begin with '{'");
+    }
+  }
+
+  /**
+   * Reads the first name in an object that has just begun, and the ':' after it. Returns null if the object is empty.
+   */
+  public String firstName() throws JSONException {
+    switch (tokener.nextClean()) {
+      case 0:
+        throw tokener.syntaxError("A JSONObject text must end with '}'");
+      case '}':
+        return null;
+      default:
+        tokener.back();
+        final String name = tokener.nextValue().toString();
+        if (tokener.nextClean() != ':') {
+          throw tokener.syntaxError("Expected a ':' after a key");
+        }
+        return name;
+    }
+  }
+
+  /**
+   * Reads the separator after a value and the name that follows it. Returns null at the end of the object.
+   */
+  public String nextName() throws JSONException {
+    switch (tokener.nextClean()) {
+      case ';':
+      case ',':
+        if (tokener.nextClean() == '}') {
+          return null;
+        }
+        tokener.back();
+        return firstName();
+      case '}':
+        return null;
+      default:
+        throw tokener.syntaxError("Expected a ',' or '}'");
+    }
+  }
+
+  /**
+   * Reads the rest of an object whose first name has already been read, as a JSONObject.
+   */
+  public JSONObject finishObject(final String firstName) throws JSONException {
+    final JSONObject result = new JSONObject();
+    for (String name = firstName; name != null; name = nextName()) {
+      result.putOnce(name, nextValue());
+    }
+    return result;
+  }
+
+  public void beginArray() throws JSONException {
+    if (tokener.nextClean() != '[') {
+      throw tokener.syntaxError("A JSONArray text must start with '['");
+    }
+  }
+
+  /**
+   * Returns whether an array that has just begun has an element to read.
+   */
+  public boolean firstElement() throws JSONException {
+    if (tokener.nextClean() == ']') {
+      return false;
+    }
+    tokener.back();
+    return true;
+  }
+
+  /**
+   * Reads the separator after an element, and returns whether another element follows it.
+   */
+  public boolean nextElement() throws JSONException {
+    switch (tokener.nextClean()) {
+      case ',':
+        return firstElement();
+      case ']':
+        return false;
+      default:
+        throw tokener.syntaxError("Expected a ',' or ']'");
+    }
+  }
+
+  /**
+   * Returns whether the next value is an object, without reading any of it.
+   */
+  public boolean nextIsObject() throws JSONException {
+    if (pending != null) {
+      return false;
+    }
+    final char next = tokener.nextClean();
+    tokener.back();
+    return next == '{';
+  }
+
+  /**
+   * Reads the next value if it is null, and returns whether it was.
+   */
+  public boolean nextIsNull() throws JSONException {
+    if (pending == null) {
+      final char next = tokener.nextClean();
+      tokener.back();
+      if (next != 'n' && next != 'N') {
+        return false;
+      }
+      pending = tokener.nextValue();
+    }
+    if (pending == JSONObject.NULL) {
+      pending = null;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Reads the next value as JSONObject would hold it: a JSONObject, JSONArray, String, Boolean, Number or
+   * JSONObject.NULL.
+   */
+  public Object nextValue() throws JSONException {
+    final Object result = pending;
+    if (result != null) {
+      pending = null;
+      return result;
+    }
+    return tokener.nextValue();
+  }
+
+  public void skipValue() throws JSONException {
+    nextValue();
+  }
+
+  /**
+   * Reads the next value as a String, or null if it is null.
+   */
+  public String nextString() throws JSONException {
+    final Object value = nextValue();
+    if (value instanceof String) {
+      return (String) value;
+    }
+    if (value == JSONObject.NULL) {
+      return null;
+    }
+    throw tokener.syntaxError("Expected a string");
+  }
+
+  /**
+   * Reads the next value as a constant of the given enum, as Enum.valueOf would read its String form.
+   */
+  public <E extends Enum<E>> E nextEnum(final EnumLookup<E> constants) throws JSONException {
+    if (pending == null) {
+      final E result = tokener.nextKnownString(constants);
+      if (result != null) {
+        return result;
+      }
+    }
+    return constants.valueOf(String.valueOf(nextValue()));
+  }
+
+  public boolean nextBoolean() throws JSONException {
+    final Object value = nextValue();
+    if (value.equals(Boolean.FALSE) || (value instanceof String && ((String) value).equalsIgnoreCase("false"))) {
+      return false;
+    } else if (value.equals(Boolean.TRUE) || (value instanceof String && ((String) value).equalsIgnoreCase("true"))) {
+      return true;
+    }
+    throw tokener.syntaxError("Expected a Boolean");
+  }
+
+  public int nextInt() throws JSONException {
+    if (pending == null) {
+      switch (tokener.nextNumber()) {
+        case JSONTokener.INTEGER:
+          return (int) tokener.longValue();
+        case JSONTokener.DECIMAL:
+          return (int) tokener.doubleValue();
+      }
+    }
+    final Object value = nextValue();
+    try {
+      return value instanceof Number ? ((Number) value).intValue() : Integer.parseInt((String) value);
+    } catch (final RuntimeException e) {
+      throw tokener.syntaxError("Expected an int");
+    }
+  }
+
+  public long nextLong() throws JSONException {
+    if (pending == null) {
+      switch (tokener.nextNumber()) {
+        case JSONTokener.INTEGER:
+          return tokener.longValue();
+        case JSONTokener.DECIMAL:
+          return (long) tokener.doubleValue();
+      }
+    }
+    final Object value = nextValue();
+    try {
+      return value instanceof Number ? ((Number) value).longValue() : Long.parseLong((String) value);
+    } catch (final RuntimeException e) {
+      throw tokener.syntaxError("Expected a long");
+    }
+  }
+
+  public double nextDouble() throws JSONException {
+    if (pending == null) {
+      switch (tokener.nextNumber()) {
+        case JSONTokener.INTEGER:
+          return tokener.longValue();
+        case JSONTokener.DECIMAL:
+          return tokener.doubleValue();
+      }
+    }
+    final Object value = nextValue();
+    try {
+      return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble((String) value);
+    } catch (final RuntimeException e) {
+      throw tokener.syntaxError("Expected a number");
+    }
+  }
+
+  /**
+   * Fails the binding of a primitive member that the input has no value for.
+   */
+  public JSONException missingMember(final String name) {
+    return new JSONException("JSONObject[" + JSONObject.quote(name) + "] not found.");
+  }
+
+  /**
+   * Fails the binding of an object that has the same name twice, as JSONObject.putOnce would.
+   */
+  public JSONException duplicateName(final String name) {
+    return new JSONException("Duplicate key \"" + name + "\"");
+  }
+}
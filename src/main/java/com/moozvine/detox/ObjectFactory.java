@@ -2,15 +2,33 @@ package com.moozvine.detox;
 
 import com.moozvine.detox.repackaged.org.json.JSONObject;
 
+import java.io.IOException;
+
 /**
  * Created by rich on 09/07/15.
  */
 public interface ObjectFactory<T extends Serializable> {
   DTO createDTO(
-      AbstractSerializationService service,
+      SerializationContext context,
       T original);
 
   DTO createDTO(
       AbstractSerializationService service,
       JSONObject json) throws DeserializationException;
+
+  /**
+   * Binds a DTO from the members of an object whose serializedType has already been read, up to and including the
+   * closing brace.
+   */
+  DTO createDTO(
+      AbstractSerializationService service,
+      JsonParser in) throws DeserializationException;
+
+  /**
+   * Writes the serial form of the original straight from its getters, without copying it into a DTO first.
+   */
+  void write(
+      SerializationContext context,
+      T original,
+      JsonGenerator out) throws IOException;
 }
@@ -1,59 +1,130 @@
 package com.moozvine.detox;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Finds the ObjectFactory that serves each class. Factories are stateless, and which one serves a class depends only on
+ * the class, so each is resolved once per process and shared by every service. Lookups by class go through ClassValues,
+ * which keep each factory alongside its class; they take no lock and, once resolved, allocate nothing.
+ * <p>
+ * Types are resolved by name within a class loader: detox's own unless the service says otherwise. What has been
+ * resolved in each loader is kept in a scope that refers to its loader and classes only weakly, and is itself only
+ * weakly held by its loader, so nothing here keeps the classes of an unloaded plugin or tenant alive. A service whose
+ * loader is evicted, or has gone, goes back to detox's own.
+ */
 class ObjectFactoryCache {
-  private final Map<Key, ObjectFactory<?>> factories = new HashMap<>();
+  /**
+   * Written by the annotation processor: maps each GenerateDTO typeId to the name of its interface.
+   */
+  private static final String TYPE_ID_INDEX = "META-INF/detox/type-ids.properties";
 
-  private final class Key {
-    final Class objectClass;
-    final Class bound;
+  private static final ClassValue<ObjectFactory<?>> FACTORIES_BY_INTERFACE = new ClassValue<ObjectFactory<?>>() {
+    @Override
+    protected ObjectFactory<?> computeValue(final Class<?> generatableInterface) {
+      final ObjectFactory<?> registered = PENDING_REGISTRATIONS.get(generatableInterface);
+      return registered != null ? registered : newFactory(generatableInterface);
+    }
+  };
 
-    private Key(
-        final Class objectClass,
-        final Class bound) {
-      this.objectClass = objectClass;
-      this.bound = bound;
+  private static final ClassValue<ObjectFactory<?>> FACTORIES_BY_CLASS = new ClassValue<ObjectFactory<?>>() {
+    @Override
+    protected ObjectFactory<?> computeValue(final Class<?> objectClass) {
+      return FACTORIES_BY_INTERFACE.get(findOnlyGeneratableInterface(objectClass.asSubclass(Serializable.class)));
     }
+  };
 
-    public Key(final Class objectClass) {
-      this.objectClass = objectClass;
-      this.bound = null;
+  /**
+   * For each class, the factories for it within each bound it has been written with.
+   */
+  private static final ClassValue<ConcurrentMap<Class<?>, ObjectFactory<?>>> FACTORIES_BY_BOUND
+      = new ClassValue<ConcurrentMap<Class<?>, ObjectFactory<?>>>() {
+    @Override
+    protected ConcurrentMap<Class<?>, ObjectFactory<?>> computeValue(final Class<?> objectClass) {
+      return new ConcurrentHashMap<>();
     }
+  };
 
-    @Override public boolean equals(final Object o) {
-      if (this == o) return true;
-      if (o == null || getClass() != o.getClass()) return false;
+  /**
+   * Factories handed over by a generated TypeRegistry, waiting for FACTORIES_BY_INTERFACE to take them up.
+   */
+  private static final ConcurrentMap<Class<?>, ObjectFactory<?>> PENDING_REGISTRATIONS = new ConcurrentHashMap<>();
+
+  private static final Map<ClassLoader, LoaderScope> SCOPES = new WeakHashMap<>();
 
-      final Key key = (Key) o;
+  private static final ClassLoader DEFAULT_LOADER = ObjectFactoryCache.class.getClassLoader();
 
-      if (objectClass != null
-          ? !objectClass.equals(key.objectClass)
-          : key.objectClass != null) return false;
-      return !(bound != null
-          ? !bound.equals(key.bound)
-          : key.bound != null);
+  private volatile LoaderScope scope;
 
+  ObjectFactoryCache() {
+    setClassLoader(DEFAULT_LOADER);
+  }
+
+  /**
+   * Resolves serializedType values, and finds generated registries, in the given class loader.
+   */
+  void setClassLoader(final ClassLoader classLoader) {
+    synchronized (SCOPES) {
+      scope = scopeOf(classLoader);
     }
+  }
 
-    @Override public int hashCode() {
-      int result = objectClass != null
-          ? objectClass.hashCode()
-          : 0;
-      result = 31 * result + (bound != null
-          ? bound.hashCode()
-          : 0);
-      return result;
+  private static LoaderScope scopeOf(final ClassLoader classLoader) {
+    LoaderScope loaderScope = SCOPES.get(classLoader);
+    if (loaderScope == null) {
+      loaderScope = new LoaderScope(classLoader);
+      SCOPES.put(classLoader, loaderScope);
     }
+    return loaderScope;
+  }
 
-    @Override public String toString() {
-      return this.getClass().getName() + " {"
-          + "objectClass: " + objectClass
-          + "bound:" + bound
-          + "}";
+  /**
+   * The scope of the service's loader, or of detox's own once that has been evicted or has gone.
+   */
+  private LoaderScope scope() {
+    final LoaderScope current = scope;
+    if (current.isLive()) {
+      return current;
+    }
+    synchronized (SCOPES) {
+      if (scope == current) {
+        scope = scopeOf(DEFAULT_LOADER);
+      }
+      return scope;
+    }
+  }
+
+  /**
+   * Forgets what has been resolved in the given class loader, and any factories still waiting to be taken up from
+   * its classes. Factories already taken up live with their classes, and go when they do.
+   */
+  static void evict(final ClassLoader classLoader) {
+    synchronized (SCOPES) {
+      final LoaderScope evicted = SCOPES.remove(classLoader);
+      if (evicted != null) {
+        evicted.evicted = true;
+      }
+    }
+    for (final Class<?> pending : PENDING_REGISTRATIONS.keySet()) {
+      if (pending.getClassLoader() == classLoader) {
+        PENDING_REGISTRATIONS.remove(pending);
+      }
     }
   }
 
@@ -62,30 +133,35 @@ class ObjectFactoryCache {
    * If the given object does not extend a @GenerateDTO annotated interface, or if it extends more than one of them,
    * a SerializationError is thrown.
    */
-  ObjectFactory getFactory(final Serializable obj) throws SerializationError {
-    final Class<? extends Serializable> targetClass = obj.getClass();
-    final Key key = new Key(targetClass);
-    if (!factories.containsKey(key)) {
-      register(targetClass, findOnlyGeneratableInterface(targetClass), null);
-    }
-    return factories.get(key);
+  @SuppressWarnings("unchecked")
+  <T extends Serializable> ObjectFactory<? super T> getFactory(final T obj) throws SerializationError {
+    return (ObjectFactory<? super T>) FACTORIES_BY_CLASS.get(obj.getClass());
   }
 
   /**
    * Returns an ObjectFactory for the highest @GenerateDTO annotated interface of the given object that is, or is a
    * subtype of, the given bound interface.
    */
-  <T extends BOUND, BOUND extends Serializable> ObjectFactory getFactory(final T obj, final Class<BOUND> bound)
-      throws SerializationError {
-    final Class<T> targetClass = (Class<T>) obj.getClass();
-    final Key key = new Key(targetClass, bound);
-    if (!factories.containsKey(key)) {
-      register(targetClass, findHighestGeneratableInterfaceWithinBound(targetClass, bound), bound);
+  @SuppressWarnings("unchecked")
+  <T extends BOUND, BOUND extends Serializable> ObjectFactory<? super T> getFactory(
+      final T obj,
+      final Class<BOUND> bound) throws SerializationError {
+    return (ObjectFactory<? super T>) getFactoryWithinBound((Class<T>) obj.getClass(), bound);
+  }
+
+  private static <T extends BOUND, BOUND extends Serializable> ObjectFactory<?> getFactoryWithinBound(
+      final Class<T> targetClass,
+      final Class<BOUND> bound) {
+    final ConcurrentMap<Class<?>, ObjectFactory<?>> factoriesByBound = FACTORIES_BY_BOUND.get(targetClass);
+    ObjectFactory<?> factory = factoriesByBound.get(bound);
+    if (factory == null) {
+      factory = FACTORIES_BY_INTERFACE.get(findHighestGeneratableInterfaceWithinBound(targetClass, bound));
+      factoriesByBound.put(bound, factory);
     }
-    return factories.get(key);
+    return factory;
   }
 
-  private <T extends GEN, GEN extends BOUND, BOUND extends Serializable> Class<GEN> findHighestGeneratableInterfaceWithinBound(
+  private static <T extends GEN, GEN extends BOUND, BOUND extends Serializable> Class<GEN> findHighestGeneratableInterfaceWithinBound(
       final Class<T> objClass,
       final Class<BOUND> bound) {
     final List<Class<?>> result = new ArrayList<>();
@@ -102,7 +178,8 @@ class ObjectFactoryCache {
     return (Class<GEN>) result.get(result.size() - 1);
   }
 
-  private <T extends GEN, GEN extends Serializable> Class<GEN> findOnlyGeneratableInterface(final Class<T> objClass) {
+  private static <T extends GEN, GEN extends Serializable> Class<GEN> findOnlyGeneratableInterface(
+      final Class<T> objClass) {
 
     final List<Class<GEN>> result = findAllGeneratableInterfaces(objClass);
     if (result.size() == 0) {
@@ -114,7 +191,7 @@ class ObjectFactoryCache {
     return result.get(0);
   }
 
-  private <T extends GEN, GEN extends Serializable> List<Class<GEN>> findAllGeneratableInterfaces(
+  private static <T extends GEN, GEN extends Serializable> List<Class<GEN>> findAllGeneratableInterfaces(
       final Class<T> objClass) {
 
     final List<Class<GEN>> result = new ArrayList<>();
@@ -154,42 +231,179 @@ class ObjectFactoryCache {
    * Returns an ObjectFactory for the specified @GenerateDTO annotated interface.
    */
   <T extends Serializable> ObjectFactory<T> getFactory(final Class<T> generatableInterface) {
-    final Key key = new Key(generatableInterface);
-    if (!factories.containsKey(key)) {
-      register(generatableInterface, generatableInterface, null);
+    return (ObjectFactory<T>) FACTORIES_BY_INTERFACE.get(generatableInterface);
+  }
+
+  /**
+   * Resolves everything the first use of a GenerateDTO interface would: its factory, under its name and any type id,
+   * and the factory its own DTOs are written with when it is the bound.
+   */
+  @SuppressWarnings("unchecked")
+  <T extends Serializable> void warmUp(final Class<T> generatableInterface) throws DeserializationException {
+    getFactory(generatableInterface);
+    scope().remember(generatableInterface.getName(), generatableInterface);
+    final GenerateDTO annotation = generatableInterface.getAnnotation(GenerateDTO.class);
+    if (annotation != null && !annotation.typeId().isEmpty()) {
+      getFactory(annotation.typeId());
     }
-    return (ObjectFactory<T>) factories.get(key);
+    try {
+      final Class<?> dtoClass = Class.forName(
+          generatableInterface.getName() + "DTO", true, generatableInterface.getClassLoader());
+      getFactoryWithinBound((Class<? extends T>) dtoClass, generatableInterface);
+    } catch (final ClassNotFoundException e) {
+      throw new IllegalArgumentException("No DTO has been generated for " + generatableInterface, e);
+    }
+  }
+
+  /**
+   * The GenerateDTO interfaces listed by every generated TypeRegistry in the class loader.
+   */
+  Set<Class<? extends Serializable>> getRegisteredInterfaces() {
+    return scope().getRegisteredInterfaces();
   }
 
-  ObjectFactory getFactory(final String generatableInterfaceName) throws DeserializationException {
+  /**
+   * Returns an ObjectFactory for a serializedType value, which is either a GenerateDTO typeId or the name of a
+   * GenerateDTO annotated interface. Each value is only resolved once.
+   */
+  ObjectFactory<?> getFactory(final String serializedType) throws DeserializationException {
+    return FACTORIES_BY_INTERFACE.get(scope().getInterface(serializedType));
+  }
+
+  private static Map<String, String> loadTypeIds(final ClassLoader classLoader) {
+    final Map<String, String> result = new HashMap<>();
     try {
-      final Class<?> targetClass = Class.forName(generatableInterfaceName);
-      if (Serializable.class.isAssignableFrom(targetClass)) {
-        return getFactory((Class<? extends Serializable>) targetClass);
-      } else {
-        throw new DeserializationException(
-            "Type: " + generatableInterfaceName + " does not extend " + Serializable.class.getName());
+      final Enumeration<URL> indexes = classLoader.getResources(TYPE_ID_INDEX);
+      while (indexes.hasMoreElements()) {
+        final URL index = indexes.nextElement();
+        final Properties properties = new Properties();
+        try (final InputStream in = index.openStream()) {
+          properties.load(in);
+        }
+        for (final String typeId : properties.stringPropertyNames()) {
+          final String interfaceName = properties.getProperty(typeId);
+          final String existing = result.put(typeId, interfaceName);
+          if (existing != null && !existing.equals(interfaceName)) {
+            throw new IllegalStateException(
+                "Type id '" + typeId + "' is used by both " + existing + " and " + interfaceName);
+          }
+        }
       }
-    } catch (final ClassNotFoundException e) {
-      throw new DeserializationException("Unknown type: " + generatableInterfaceName);
+    } catch (final IOException e) {
+      throw new IllegalStateException("Failed to read " + TYPE_ID_INDEX, e);
     }
+    return result;
   }
 
-  private <T extends Serializable> void register(
-      final Key key,
-      final ObjectFactory<T> factory) {
-    factories.put(key, factory);
+  /**
+   * What has been resolved by name within one class loader. It refers to classes only weakly, so that it doesn't keep
+   * its loader alive; a class that has gone is simply resolved again.
+   */
+  private static final class LoaderScope {
+    private final WeakReference<ClassLoader> classLoader;
+    private volatile boolean evicted;
+    private final Map<String, String> typeIds;
+    private final ConcurrentMap<String, WeakReference<Class<? extends Serializable>>> interfacesBySerializedType
+        = new ConcurrentHashMap<>();
+    private final List<WeakReference<Class<? extends Serializable>>> registered = new ArrayList<>();
+
+    LoaderScope(final ClassLoader classLoader) {
+      this.classLoader = new WeakReference<>(classLoader);
+      typeIds = loadTypeIds(classLoader);
+      loadRegistries(classLoader);
+    }
+
+    /**
+     * Loads every registry the loader can see, and resolves each name and type id it lists up front.
+     */
+    private void loadRegistries(final ClassLoader classLoader) {
+      final TypeRegistry.Registrar registrar = new TypeRegistry.Registrar() {
+        @Override
+        public <T extends Serializable> void register(
+            final Class<T> generatableInterface,
+            final String typeId,
+            final ObjectFactory<T> factory) {
+          PENDING_REGISTRATIONS.put(generatableInterface, factory);
+          FACTORIES_BY_INTERFACE.get(generatableInterface);
+          PENDING_REGISTRATIONS.remove(generatableInterface);
+          final WeakReference<Class<? extends Serializable>> reference
+              = new WeakReference<Class<? extends Serializable>>(generatableInterface);
+          registered.add(reference);
+          interfacesBySerializedType.put(generatableInterface.getName(), reference);
+          if (typeId != null) {
+            interfacesBySerializedType.put(typeId, reference);
+          }
+        }
+      };
+      final Iterator<TypeRegistry> registries = ServiceLoader.load(TypeRegistry.class, classLoader).iterator();
+      while (registries.hasNext()) {
+        registries.next().registerAll(registrar);
+      }
+    }
+
+    boolean isLive() {
+      return !evicted && classLoader.get() != null;
+    }
+
+    Class<? extends Serializable> getInterface(final String serializedType) throws DeserializationException {
+      final WeakReference<Class<? extends Serializable>> known = interfacesBySerializedType.get(serializedType);
+      Class<? extends Serializable> result = known == null ? null : known.get();
+      if (result == null) {
+        final String interfaceName = typeIds.get(serializedType);
+        result = resolve(interfaceName != null ? interfaceName : serializedType);
+        interfacesBySerializedType.put(serializedType, new WeakReference<Class<? extends Serializable>>(result));
+      }
+      return result;
+    }
+
+    void remember(
+        final String serializedType,
+        final Class<? extends Serializable> generatableInterface) {
+      final WeakReference<Class<? extends Serializable>> known = interfacesBySerializedType.get(serializedType);
+      if (known == null || known.get() == null) {
+        interfacesBySerializedType.put(
+            serializedType, new WeakReference<Class<? extends Serializable>>(generatableInterface));
+      }
+    }
+
+    Set<Class<? extends Serializable>> getRegisteredInterfaces() {
+      final Set<Class<? extends Serializable>> result = new HashSet<>();
+      for (final WeakReference<Class<? extends Serializable>> reference : registered) {
+        final Class<? extends Serializable> generatableInterface = reference.get();
+        if (generatableInterface != null) {
+          result.add(generatableInterface);
+        }
+      }
+      return Collections.unmodifiableSet(result);
+    }
+
+    private Class<? extends Serializable> resolve(final String generatableInterfaceName)
+        throws DeserializationException {
+      final ClassLoader loader = classLoader.get();
+      if (loader == null) {
+        throw new DeserializationException(
+            "Unknown type: " + generatableInterfaceName + " (its class loader has gone)");
+      }
+      try {
+        final Class<?> targetClass = Class.forName(generatableInterfaceName, true, loader);
+        if (Serializable.class.isAssignableFrom(targetClass)) {
+          return targetClass.asSubclass(Serializable.class);
+        } else {
+          throw new DeserializationException(
+              "Type: " + generatableInterfaceName + " does not extend " + Serializable.class.getName());
+        }
+      } catch (final ClassNotFoundException e) {
+        throw new DeserializationException("Unknown type: " + generatableInterfaceName);
+      }
+    }
   }
 
-  @SuppressWarnings("unchecked")
-  private <T extends GEN, GEN extends BOUND, BOUND extends Serializable> void register(
-      final Class<T> objectClass, final Class<GEN> generatableInterface, final Class<BOUND> bound) {
+  private static ObjectFactory<?> newFactory(final Class<?> generatableInterface) {
     try {
-      final Class<ObjectFactory<T>> factoryClazz
-          = (Class<ObjectFactory<T>>) Class.forName(generatableInterface.getName() + "DTO$Factory");
-      register(new Key(objectClass, bound), factoryClazz.newInstance());
+      return (ObjectFactory<?>) Class.forName(
+          generatableInterface.getName() + "DTO$Factory", true, generatableInterface.getClassLoader()).newInstance();
     } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
-      throw new IllegalArgumentException("Failed to register " + objectClass
+      throw new IllegalArgumentException("Failed to register " + generatableInterface
           + ". Check that the class implements Serializable, is tagged " +
           "with the @GenerateDTO annotation and has been compiled.", e);
     }
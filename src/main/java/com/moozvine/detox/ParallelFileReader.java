@@ -0,0 +1,283 @@
+package com.moozvine.detox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads the documents of an NDJSON file in parallel. The file is cut into segments at line boundaries, and each
+ * segment is memory-mapped and decoded on the pool straight from the mapped bytes, through the same deserialize
+ * pipeline as readAll from a stream.
+ * <p>
+ * Unordered, each segment hands its documents to the handler as it reads them, on whichever thread it runs on. Ordered,
+ * each segment collects its documents, and they are handed over a segment at a time in file order on the calling
+ * thread; only a few segments per thread are read ahead of the one being handed over, to bound what is held.
+ * <p>
+ * Once any segment fails, the others stop at their next document, and the read waits for them to before it throws, so
+ * that the handler is never called after it has.
+ */
+final class ParallelFileReader<T> {
+  /**
+   * The most bytes in one segment. A single mapping can't exceed 2GB, and an ordered read holds each segment's
+   * documents until its turn comes, so segments are kept well below that.
+   */
+  private static final long MAX_SEGMENT_SIZE = 16L << 20;
+
+  private static final int SEGMENTS_PER_THREAD = 4;
+  private static final int ORDERED_SEGMENTS_IN_FLIGHT_PER_THREAD = 2;
+  private static final int BOUNDARY_SCAN_SIZE = 8192;
+
+  private final AbstractSerializationService service;
+  private final Path file;
+  private final Class<T> expectedType;
+  private final DocumentHandler<? super T> handler;
+
+  /**
+   * The first exception a segment failed with. Each reader reads its file once.
+   */
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+  ParallelFileReader(
+      final AbstractSerializationService service,
+      final Path file,
+      final Class<T> expectedType,
+      final DocumentHandler<? super T> handler) {
+    this.service = service;
+    this.file = file;
+    this.expectedType = expectedType;
+    this.handler = handler;
+  }
+
+  void read(
+      final ForkJoinPool pool,
+      final boolean ordered) throws DeserializationException, IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final long[] bounds = segmentBounds(channel, pool.getParallelism());
+      final List<Segment> segments = new ArrayList<>(bounds.length - 1);
+      for (int i = 0; i < bounds.length - 1; ++i) {
+        segments.add(new Segment(channel, bounds[i], bounds[i + 1], ordered));
+      }
+      final List<Segment> started = new ArrayList<>(segments.size());
+      try {
+        if (ordered) {
+          readOrdered(pool, segments, started);
+        } else {
+          readUnordered(pool, segments, started);
+        }
+      } catch (final RuntimeException e) {
+        failure.compareAndSet(null, e);
+        for (final Segment segment : started) {
+          segment.quietlyJoin();
+        }
+        throw rethrow(failure.get());
+      }
+    }
+  }
+
+  private void readUnordered(
+      final ForkJoinPool pool,
+      final List<Segment> segments,
+      final List<Segment> started) {
+    for (final Segment segment : segments) {
+      pool.execute(segment);
+      started.add(segment);
+    }
+    for (final Segment segment : segments) {
+      segment.join();
+    }
+  }
+
+  private void readOrdered(
+      final ForkJoinPool pool,
+      final List<Segment> segments,
+      final List<Segment> started) {
+    final int window = pool.getParallelism() * ORDERED_SEGMENTS_IN_FLIGHT_PER_THREAD;
+    final Deque<Segment> inFlight = new ArrayDeque<>(window);
+    for (final Segment segment : segments) {
+      if (inFlight.size() == window) {
+        handOver(inFlight.removeFirst());
+      }
+      pool.execute(segment);
+      started.add(segment);
+      inFlight.addLast(segment);
+    }
+    while (!inFlight.isEmpty()) {
+      handOver(inFlight.removeFirst());
+    }
+  }
+
+  /**
+   * Hands over the documents of a segment, unless some segment has failed, in which case this one may have stopped
+   * short.
+   */
+  private void handOver(final Segment segment) {
+    final List<T> documents = segment.join();
+    final RuntimeException failed = failure.get();
+    if (failed != null) {
+      throw failed;
+    }
+    for (final T document : documents) {
+      handler.handle(document);
+    }
+  }
+
+  /**
+   * The offsets at which segments start, each at the start of a line, followed by the size of the file.
+   */
+  private static long[] segmentBounds(
+      final FileChannel channel,
+      final int parallelism) throws IOException {
+    final long size = channel.size();
+    final long count = Math.max(
+        (long) parallelism * SEGMENTS_PER_THREAD,
+        (size + MAX_SEGMENT_SIZE - 1) / MAX_SEGMENT_SIZE);
+    final long target = Math.max((size + count - 1) / count, 1);
+    final List<Long> bounds = new ArrayList<>();
+    bounds.add(0L);
+    for (long start = lineStart(channel, target, size); start < size; start = lineStart(channel, start + target, size)) {
+      if (start - bounds.get(bounds.size() - 1) > Integer.MAX_VALUE) {
+        throw new IOException("Can't split " + size + " bytes into segments of whole lines under 2GB");
+      }
+      bounds.add(start);
+    }
+    if (size - bounds.get(bounds.size() - 1) > Integer.MAX_VALUE) {
+      throw new IOException("Can't split " + size + " bytes into segments of whole lines under 2GB");
+    }
+    bounds.add(size);
+    final long[] result = new long[bounds.size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = bounds.get(i);
+    }
+    return result;
+  }
+
+  /**
+   * The offset of the first line that starts at or after the given offset, or the size of the file if there is none.
+   */
+  private static long lineStart(
+      final FileChannel channel,
+      final long offset,
+      final long size) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+    long position = offset - 1;
+    while (position < size) {
+      buffer.clear();
+      final int read = channel.read(buffer, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; ++i) {
+        if (buffer.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+
+  /**
+   * Rethrows the checked exception a segment failed with, which had to cross the pool wrapped in a SegmentFailure.
+   * The pool may have wrapped that in turn, to show the joining thread's stack.
+   */
+  private static RuntimeException rethrow(final RuntimeException e) throws DeserializationException, IOException {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof SegmentFailure) {
+        if (t.getCause() instanceof IOException) {
+          throw (IOException) t.getCause();
+        }
+        throw (DeserializationException) t.getCause();
+      }
+    }
+    throw e;
+  }
+
+  private final class Segment extends RecursiveTask<List<T>> {
+    private static final long serialVersionUID = 1L;
+
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+    private final boolean collect;
+
+    Segment(
+        final FileChannel channel,
+        final long start,
+        final long end,
+        final boolean collect) {
+      this.channel = channel;
+      this.start = start;
+      this.end = end;
+      this.collect = collect;
+    }
+
+    @Override
+    protected List<T> compute() {
+      try {
+        return read();
+      } catch (final RuntimeException e) {
+        failure.compareAndSet(null, e);
+        throw e;
+      }
+    }
+
+    /**
+     * Reads the segment's documents until it runs out of them, or another segment fails.
+     */
+    private List<T> read() {
+      final List<T> documents = collect ? new ArrayList<T>() : null;
+      try {
+        final ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        final DocumentIterator<T> iterator = service.readAll(new ByteBufferReader(bytes), expectedType);
+        while (failure.get() == null) {
+          final T document;
+          try {
+            if (!iterator.hasNext()) {
+              break;
+            }
+            document = iterator.next();
+          } catch (final IllegalArgumentException e) {
+            throw failure(e);
+          }
+          if (collect) {
+            documents.add(document);
+          } else {
+            handler.handle(document);
+          }
+        }
+      } catch (final IOException e) {
+        throw new SegmentFailure(e);
+      }
+      return documents;
+    }
+
+    private RuntimeException failure(final IllegalArgumentException e) {
+      final IOException readFailure = AbstractSerializationService.readFailure(e);
+      if (readFailure != null) {
+        return new SegmentFailure(readFailure);
+      }
+      if (e.getCause() instanceof DeserializationException) {
+        return new SegmentFailure(new DeserializationException(
+            "In the lines of " + file + " from byte " + start + ": " + e.getMessage(), e.getCause()));
+      }
+      return e;
+    }
+  }
+
+  private static final class SegmentFailure extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    SegmentFailure(final Exception cause) {
+      super(cause);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package com.moozvine.detox;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Deserializes a sequence of UTF-8 encoded JSON documents from chunks of bytes pushed to it as they arrive, for servers
+ * that can't block a thread waiting for the rest of a request. Each chunk is scanned once, as it is fed, for the end of
+ * the document it is part of; each document is deserialized and handed to the handler as soon as its last byte
+ * arrives, on the feeding thread. A document wholly within one chunk is read straight from the chunk; only the bytes
+ * of a document split across chunks are kept between them.
+ * <p>
+ * Documents may be one per line, as in NDJSON, or simply one after another, and each must be an object, an array or a
+ * string. Once a feed fails, the parser has lost its place, and fails any further feed with IllegalStateException.
+ */
+public final class PushParser<T> {
+  private static final int INITIAL_BUFFER_SIZE = 1024;
+
+  /**
+   * The largest buffer kept for the next split document once one has been read, so that one huge document doesn't
+   * hold on to its memory for the life of the connection.
+   */
+  private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+  private final AbstractSerializationService service;
+  private final Class<T> expectedType;
+  private final DocumentHandler<? super T> handler;
+
+  private boolean inDocument = false;
+  private boolean inString = false;
+  private boolean escaped = false;
+  private int depth = 0;
+
+  /**
+   * The bytes of a document that began in an earlier chunk.
+   */
+  private byte[] pending = new byte[INITIAL_BUFFER_SIZE];
+  private int pendingLength = 0;
+  private boolean failed = false;
+
+  PushParser(
+      final AbstractSerializationService service,
+      final Class<T> expectedType,
+      final DocumentHandler<? super T> handler) {
+    this.service = service;
+    this.expectedType = expectedType;
+    this.handler = handler;
+  }
+
+  public void feed(
+      final byte[] bytes,
+      final int offset,
+      final int length) throws DeserializationException {
+    feed(ByteBuffer.wrap(bytes, offset, length));
+  }
+
+  /**
+   * Reads all the bytes remaining in the chunk, which may then be reused.
+   */
+  public void feed(final ByteBuffer chunk) throws DeserializationException {
+    if (failed) {
+      throw new IllegalStateException("An earlier chunk failed to parse");
+    }
+    failed = true;
+    final int end = chunk.limit();
+    int start = chunk.position();
+    for (int i = start; i < end; ++i) {
+      final byte b = chunk.get(i);
+      if (!inDocument) {
+        if (b == '{' || b == '[') {
+          depth = 1;
+        } else if (b == '"') {
+          inString = true;
+        } else if (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+          continue;
+        } else {
+          throw new DeserializationException(
+              "A document must begin with '{', '[' or '\"', not '" + (char) (b & 0xFF) + "'");
+        }
+        inDocument = true;
+        start = i;
+      } else if (inString) {
+        if (escaped) {
+          escaped = false;
+        } else if (b == '\\') {
+          escaped = true;
+        } else if (b == '"') {
+          inString = false;
+          if (depth == 0) {
+            documentEndsAt(chunk, start, i + 1);
+          }
+        }
+      } else if (b == '"') {
+        inString = true;
+      } else if (b == '{' || b == '[') {
+        ++depth;
+      } else if ((b == '}' || b == ']') && --depth == 0) {
+        documentEndsAt(chunk, start, i + 1);
+      }
+    }
+    if (inDocument) {
+      append(chunk, start, end);
+    }
+    chunk.position(end);
+    failed = false;
+  }
+
+  /**
+   * Signals the end of the input, failing if it ends part way through a document.
+   */
+  public void finish() throws DeserializationException {
+    if (failed) {
+      throw new IllegalStateException("An earlier chunk failed to parse");
+    }
+    if (inDocument) {
+      failed = true;
+      throw new DeserializationException("The input ended part way through a document");
+    }
+  }
+
+  private void documentEndsAt(
+      final ByteBuffer chunk,
+      final int start,
+      final int end) throws DeserializationException {
+    final T document;
+    if (pendingLength == 0) {
+      final ByteBuffer bytes = chunk.duplicate();
+      bytes.limit(end).position(start);
+      document = service.deserialize(bytes, expectedType);
+    } else {
+      append(chunk, start, end);
+      document = service.deserialize(ByteBuffer.wrap(pending, 0, pendingLength), expectedType);
+      pendingLength = 0;
+      if (pending.length > MAX_RETAINED_BUFFER_SIZE) {
+        pending = new byte[INITIAL_BUFFER_SIZE];
+      }
+    }
+    inDocument = false;
+    handler.handle(document);
+  }
+
+  private void append(
+      final ByteBuffer chunk,
+      final int start,
+      final int end) {
+    final int length = end - start;
+    if (pendingLength + length > pending.length) {
+      pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+    }
+    final ByteBuffer bytes = chunk.duplicate();
+    bytes.limit(end).position(start);
+    bytes.get(pending, pendingLength, length);
+    pendingLength += length;
+  }
+}
@@ -0,0 +1,59 @@
+package com.moozvine.detox;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * State for converting one object graph into DTOs. Each nested Serializable is converted exactly once per interface
+ * type, so a sub-object that is shared across the graph yields a single DTO rather than one per reference.
+ * <p>
+ * When a service serializes directly, the context instead writes each nested Serializable straight from its getters.
+ * <p>
+ * A context lives for a single serialize call and is not thread-safe.
+ */
+public final class SerializationContext {
+  private final AbstractSerializationService service;
+  private final Map<Class<?>, Map<Object, DTO>> converted = new HashMap<>();
+
+  SerializationContext(final AbstractSerializationService service) {
+    this.service = service;
+  }
+
+  public AbstractSerializationService getService() {
+    return service;
+  }
+
+  /**
+   * Returns the DTO for the given object as the highest @GenerateDTO interface within the given bound, converting it
+   * if this context has not already done so.
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Serializable> DTO createDTO(
+      final T original,
+      final Class<T> bound) {
+    Map<Object, DTO> byIdentity = converted.get(bound);
+    if (byIdentity == null) {
+      byIdentity = new IdentityHashMap<>();
+      converted.put(bound, byIdentity);
+    }
+    DTO result = byIdentity.get(original);
+    if (result == null) {
+      result = service.getFactory(original, bound).createDTO(this, original);
+      byIdentity.put(original, result);
+    }
+    return result;
+  }
+
+  /**
+   * Writes the given object as the highest @GenerateDTO interface within the given bound, straight from its getters.
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Serializable> void write(
+      final T original,
+      final Class<T> bound,
+      final JsonGenerator out) throws IOException {
+    service.getFactory(original, bound).write(this, original, out);
+  }
+}
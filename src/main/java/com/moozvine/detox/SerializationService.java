@@ -6,6 +6,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
 
 public interface SerializationService {
 
@@ -31,6 +36,64 @@ public interface SerializationService {
       OutputStream out)
       throws SerializationError, IOException;
 
+  /**
+   * Writes the object as UTF-8 into the buffer, heap or direct, at its position. If it doesn't fit, throws
+   * BufferOverflowException and leaves the position as it was.
+   */
+  <T extends Serializable> void write(
+      T obj,
+      Class<T> interfaceType,
+      ByteBuffer out)
+      throws SerializationError;
+
+  /**
+   * Writes the object as UTF-8 to a channel in blocking mode, with gathering writes where the channel supports them,
+   * and leaves the channel open. A channel in non-blocking mode is refused with IllegalBlockingModeException.
+   */
+  <T extends Serializable> void write(
+      T obj,
+      Class<T> interfaceType,
+      WritableByteChannel out)
+      throws SerializationError, IOException;
+
+  /**
+   * How writeAll lays out a sequence of objects.
+   */
+  enum Format {
+    /**
+     * A single JSON array, pretty printed if the service is.
+     */
+    JSON_ARRAY,
+
+    /**
+     * One object per line, each followed by a newline, as readAll reads them.
+     */
+    NDJSON
+  }
+
+  /**
+   * Writes each of the given objects with the given interface type to the stream as UTF-8, one at a time, so that
+   * only one of them is ever held in serialized form. The stream is flushed as the writing goes and at the end, but
+   * not closed.
+   */
+  <T extends Serializable> void writeAll(
+      Iterable<? extends T> objects,
+      Class<T> interfaceType,
+      OutputStream out,
+      Format format)
+      throws SerializationError, IOException;
+
+  /**
+   * Serializes the given object to UTF-8 encoded bytes, without producing an intermediate String.
+   */
+  byte[] toBytes(Serializable obj) throws SerializationError;
+
+  /**
+   * Serializes the given object with the given interface type to UTF-8 encoded bytes, without producing an
+   * intermediate String.
+   */
+  <T extends Serializable> byte[] toBytes(T obj, Class<T> interfaceType) throws SerializationError;
+
   /**
    * Serializes the given object to a serial form with the given interface type.
    */
@@ -65,6 +128,53 @@ public interface SerializationService {
   <T> T deserialize(Reader reader, Class<T> expectedType)
       throws DeserializationException, IOException;
 
+  /**
+   * Deserializes the UTF-8 encoded bytes remaining in the buffer, heap or direct, leaving its position at its limit.
+   */
+  <T> T deserialize(ByteBuffer buffer, Class<T> expectedType) throws DeserializationException;
+
+  /**
+   * Deserializes from a channel in blocking mode, closing it once read, as the stream and reader forms close theirs.
+   */
+  <T> T deserialize(
+      ReadableByteChannel channel,
+      Class<T> expectedType)
+      throws DeserializationException, IOException;
+
+  /**
+   * Lazily deserializes each of a sequence of UTF-8 encoded JSON documents of the given type, whether one per line
+   * (NDJSON) or simply concatenated. Only the document being read is held in memory; close the iterator to close the
+   * stream early.
+   */
+  <T> DocumentIterator<T> readAll(InputStream stream, Class<T> expectedType);
+
+  <T> DocumentIterator<T> readAll(Reader reader, Class<T> expectedType);
+
+  /**
+   * Returns a parser that never blocks: it is fed chunks of UTF-8 encoded JSON documents of the given type as they
+   * arrive, and hands each document to the handler as soon as it is complete.
+   */
+  <T> PushParser<T> newPushParser(Class<T> expectedType, DocumentHandler<? super T> handler);
+
+  /**
+   * Returns a thread-safe codec that writes and reads the given type without resolving its factory on every call.
+   */
+  <T extends Serializable> Codec<T> codecFor(Class<T> type);
+
+  /**
+   * Deserializes each line of a UTF-8 encoded NDJSON file as a document of the given type, reading segments of the file
+   * in parallel on the given pool straight from memory-mapped bytes. If ordered, the handler is given the documents in
+   * file order, on the calling thread; otherwise it is given them as they are read, concurrently, on the pool's
+   * threads. Returns once every document has been handled.
+   */
+  <T> void readAll(
+      Path file,
+      Class<T> expectedType,
+      ForkJoinPool pool,
+      boolean ordered,
+      DocumentHandler<? super T> handler)
+      throws DeserializationException, IOException;
+
 //  @SuppressWarnings("unchecked")
 //  <T extends Serializable> void register(Class<T> clazz);
 }
@@ -0,0 +1,116 @@
+package com.moozvine.detox;
+
+import com.moozvine.detox.AbstractSerializationService.Serializer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A service's custom serializers, by target type. Registration copies the map on write, so lookups never lock and may
+ * run alongside registrations on other threads.
+ * <p>
+ * A value is written with the serializer for the nearest of its class, its superclasses or its interfaces that has
+ * one, so a serializer for Date also writes a Timestamp; which serializer that is, or that there is none, is cached per
+ * class until the next registration. A value is read only with the serializer for exactly the type asked for, since a
+ * serializer for a supertype can't produce the subtype.
+ */
+final class SerializerRegistry {
+  /**
+   * Cached for classes with no serializer, so that they're only searched for once.
+   */
+  private static final Object NONE = new Object();
+
+  private volatile State state;
+
+  private static final class State {
+    final Map<Class<?>, Serializer<?>> registered;
+    final ConcurrentMap<Class<?>, Object> resolved = new ConcurrentHashMap<>();
+
+    State(final Map<Class<?>, Serializer<?>> registered) {
+      this.registered = registered;
+    }
+  }
+
+  SerializerRegistry(final Serializer<?>... serializers) {
+    final Map<Class<?>, Serializer<?>> registered = new HashMap<>();
+    for (final Serializer<?> serializer : serializers) {
+      registered.put(serializer.getTargetType(), serializer);
+    }
+    state = new State(registered);
+  }
+
+  synchronized void register(final Serializer<?> serializer) {
+    final Map<Class<?>, Serializer<?>> registered = new HashMap<>(state.registered);
+    registered.put(serializer.getTargetType(), serializer);
+    state = new State(registered);
+  }
+
+  /**
+   * Forgets which serializer was found for each class, so that the cache no longer refers to any of them.
+   */
+  synchronized void forgetResolved() {
+    state = new State(state.registered);
+  }
+
+  /**
+   * The serializer registered for exactly the given type, or null if there is none.
+   */
+  @SuppressWarnings("unchecked")
+  <T> Serializer<T> forType(final Class<T> type) {
+    return (Serializer<T>) state.registered.get(type);
+  }
+
+  /**
+   * The serializer to write a value of the given class with, or null if there is none.
+   */
+  @SuppressWarnings("unchecked")
+  Serializer<Object> forValueOf(final Class<?> valueClass) {
+    final State current = state;
+    Object serializer = current.resolved.get(valueClass);
+    if (serializer == null) {
+      serializer = nearest(current.registered, valueClass);
+      current.resolved.put(valueClass, serializer);
+    }
+    return serializer == NONE ? null : (Serializer<Object>) serializer;
+  }
+
+  /**
+   * Searches the class, then each superclass in turn, then their interfaces nearest first.
+   */
+  private static Object nearest(
+      final Map<Class<?>, Serializer<?>> registered,
+      final Class<?> valueClass) {
+    for (Class<?> c = valueClass; c != null; c = c.getSuperclass()) {
+      final Serializer<?> serializer = registered.get(c);
+      if (serializer != null) {
+        return serializer;
+      }
+    }
+    final Deque<Class<?>> interfaces = new ArrayDeque<>();
+    final Set<Class<?>> seen = new HashSet<>();
+    for (Class<?> c = valueClass; c != null; c = c.getSuperclass()) {
+      for (final Class<?> directInterface : c.getInterfaces()) {
+        interfaces.add(directInterface);
+      }
+    }
+    while (!interfaces.isEmpty()) {
+      final Class<?> candidate = interfaces.removeFirst();
+      if (seen.add(candidate)) {
+        final Serializer<?> serializer = registered.get(candidate);
+        if (serializer != null) {
+          return serializer;
+        }
+        for (final Class<?> superInterface : candidate.getInterfaces()) {
+          interfaces.add(superInterface);
+        }
+      }
+    }
+    return NONE;
+  }
+}
@@ -15,8 +15,8 @@ public final class TestInstanceGenerator {
     try {
       final Map<Class, ValueGenerator<? extends Object>> result = new HashMap<>();
       result.put(String.class, constant("some string"));
-      result.put(Byte.class, constant(123));
-      result.put(Byte.TYPE, constant(1234));
+      result.put(Byte.class, constant((byte) 123));
+      result.put(Byte.TYPE, constant((byte) 12));
       result.put(Integer.class, constant(123));
       result.put(Integer.TYPE, constant(1234));
       result.put(Float.class, constant(123.45F));
@@ -36,8 +36,8 @@ public final class TestInstanceGenerator {
 
   public <T extends Serializable> T generate(final Class<T> messageClass)
       throws Exception {
-    final Class<? extends Serializable> builderClass
-        = (Class<? extends Serializable>) Class.forName(messageClass.getName() + "Builder");
+    final Class<?> builderClass
+        = Class.forName(messageClass.getName() + "Builder", true, messageClass.getClassLoader());
 
     Object builder = builderClass.getMethod("newBuilder").invoke(null);
     while (!hasBuildMethod(builder)) {
@@ -86,7 +86,6 @@ public final class TestInstanceGenerator {
       final Object builder,
       final Method setter) throws Exception {
     final Object dummyValue = getDummyValueForType(setter.getParameterTypes()[0], setterNameToFieldName(setter.getName()));
-    System.err.println("Invoking setter " + setter + " with value " + dummyValue);
     return setter.invoke(builder, dummyValue);
   }
 
@@ -100,8 +99,8 @@ public final class TestInstanceGenerator {
     if (valueGenerators.containsKey(memberClass)) {
       return valueGenerators.get(memberClass).apply(fieldName);
     }
-    throw new IllegalArgumentException("No value generator registered for class " + memberClass + " needed for field "
-        + fieldName);
+    throw new InstanceGenerationException("No value generator registered for class " + memberClass
+        + " needed for field " + fieldName);
   }
 
   private List<Method> listSetters(final Object builder) {
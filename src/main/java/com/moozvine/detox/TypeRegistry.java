@@ -0,0 +1,20 @@
+package com.moozvine.detox;
+
+/**
+ * The factories for every GenerateDTO interface in a module, generated by the annotation processor and listed in
+ * META-INF/services, so that types can be resolved by name or type id without reflection. Not meant to be implemented
+ * by hand.
+ */
+public interface TypeRegistry {
+  void registerAll(Registrar registrar);
+
+  interface Registrar {
+    /**
+     * @param typeId The interface's GenerateDTO typeId, or null if it has none.
+     */
+    <T extends Serializable> void register(
+        Class<T> generatableInterface,
+        String typeId,
+        ObjectFactory<T> factory);
+  }
+}
@@ -0,0 +1,147 @@
+package com.moozvine.detox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A Writer that encodes UTF-8 directly into its own byte buffer and hands the bytes to the underlying stream in
+ * buffer-sized chunks, so that serialized output never exists as a String. Runs of ASCII, the common case for JSON,
+ * are copied a byte per char without going through the general encoder.
+ * <p>
+ * Unpaired surrogates are written as '?', as OutputStreamWriter does. Closing this writer flushes it but leaves the
+ * underlying stream open: the stream belongs to whoever passed it in.
+ */
+final class Utf8Writer extends Writer {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final OutputStream out;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position;
+
+  /**
+   * A high surrogate waiting for the low surrogate that completes it, or 0 if there is none.
+   */
+  private char highSurrogate;
+
+  Utf8Writer(final OutputStream out) {
+    this.out = out;
+  }
+
+  @Override public void write(final int c) throws IOException {
+    encode((char) c);
+  }
+
+  @Override public void write(
+      final char[] chars,
+      final int offset,
+      final int length) throws IOException {
+    final int end = offset + length;
+    int i = offset;
+    while (i < end) {
+      final char c = chars[i++];
+      if (c < 0x80 && highSurrogate == 0) {
+        if (position == buffer.length) {
+          flushBuffer();
+        }
+        buffer[position++] = (byte) c;
+        final int limit = Math.min(end, i + buffer.length - position);
+        while (i < limit && chars[i] < 0x80) {
+          buffer[position++] = (byte) chars[i++];
+        }
+      } else {
+        encode(c);
+      }
+    }
+  }
+
+  @Override public void write(
+      final String string,
+      final int offset,
+      final int length) throws IOException {
+    final int end = offset + length;
+    int i = offset;
+    while (i < end) {
+      final char c = string.charAt(i++);
+      if (c < 0x80 && highSurrogate == 0) {
+        if (position == buffer.length) {
+          flushBuffer();
+        }
+        buffer[position++] = (byte) c;
+        final int limit = Math.min(end, i + buffer.length - position);
+        char next;
+        while (i < limit && (next = string.charAt(i)) < 0x80) {
+          buffer[position++] = (byte) next;
+          ++i;
+        }
+      } else {
+        encode(c);
+      }
+    }
+  }
+
+  @Override public void flush() throws IOException {
+    flushBuffer();
+    out.flush();
+  }
+
+  @Override public void close() throws IOException {
+    if (highSurrogate != 0) {
+      highSurrogate = 0;
+      put('?');
+    }
+    flush();
+  }
+
+  private void encode(final char c) throws IOException {
+    if (highSurrogate != 0) {
+      final char high = highSurrogate;
+      highSurrogate = 0;
+      if (Character.isLowSurrogate(c)) {
+        final int codePoint = Character.toCodePoint(high, c);
+        ensureCapacity(4);
+        buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+        return;
+      }
+      put('?');
+    }
+
+    if (c < 0x80) {
+      put(c);
+    } else if (c < 0x800) {
+      ensureCapacity(2);
+      buffer[position++] = (byte) (0xC0 | (c >> 6));
+      buffer[position++] = (byte) (0x80 | (c & 0x3F));
+    } else if (Character.isHighSurrogate(c)) {
+      highSurrogate = c;
+    } else if (Character.isLowSurrogate(c)) {
+      put('?');
+    } else {
+      ensureCapacity(3);
+      buffer[position++] = (byte) (0xE0 | (c >> 12));
+      buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+      buffer[position++] = (byte) (0x80 | (c & 0x3F));
+    }
+  }
+
+  private void put(final char asciiChar) throws IOException {
+    ensureCapacity(1);
+    buffer[position++] = (byte) asciiChar;
+  }
+
+  private void ensureCapacity(final int bytes) throws IOException {
+    if (position + bytes > buffer.length) {
+      flushBuffer();
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    if (position > 0) {
+      out.write(buffer, 0, position);
+      position = 0;
+    }
+  }
+}
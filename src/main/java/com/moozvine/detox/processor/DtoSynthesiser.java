@@ -1,13 +1,21 @@
 package com.moozvine.detox.processor;
 
+import com.moozvine.detox.repackaged.org.json.JSONObject;
+
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
 import javax.tools.JavaFileObject;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import static com.moozvine.detox.processor.Util.hasValueOfMethod;
+import static com.moozvine.detox.processor.Util.toJavaStringLiteral;
 
 public class DtoSynthesiser {
   private final ProcessingEnvironment processingEnv;
@@ -29,10 +37,15 @@ public class DtoSynthesiser {
             "import com.moozvine.detox.DTO;                                                    \n" +
             "import com.moozvine.detox.AbstractSerializationService;                           \n" +
             "import com.moozvine.detox.DeserializationException;                               \n" +
+            "import com.moozvine.detox.EnumLookup;                                             \n" +
+            "import com.moozvine.detox.JsonGenerator;                                          \n" +
+            "import com.moozvine.detox.JsonParser;                                             \n" +
             "import com.moozvine.detox.ObjectFactory;                                          \n" +
+            "import com.moozvine.detox.SerializationContext;                                   \n" +
             "import com.moozvine.detox.repackaged.org.json.JSONArray;                          \n" +
             "import com.moozvine.detox.repackaged.org.json.JSONException;                      \n" +
             "import com.moozvine.detox.repackaged.org.json.JSONObject;                         \n" +
+            "import java.io.IOException;                                                       \n" +
             "import java.util.*;                                                               \n" +
             "                                                                                  \n" +
             "@SuppressWarnings(\"unchecked\")                                                  \n" +
@@ -44,13 +57,18 @@ public class DtoSynthesiser {
         elementToProcess.getInterfaceSimpleName()
     ));
 
+    writeKeyTokens(w, elementToProcess.getSerializedType(), members);
+    writeEnumLookups(w, members);
     writeFields(w, members);
     w.newLine();
     writeCopyConstructors(
         w, elementToProcess.getDtoSimpleName(), elementToProcess.getInterfaceSimpleName(), members);
-    writeJsonConstructors(
-        w, elementToProcess.getDtoSimpleName(), elementToProcess.getInterfaceSimpleName(), members);
+    writeJsonConstructors(w, elementToProcess.getDtoSimpleName(), members);
+    writeBindingConstructor(w, elementToProcess.getDtoSimpleName(), members);
     writeAccessors(w, members);
+    writeToJson(w, members);
+    writeWriteTo(w, members);
+    writeDirectWrite(w, elementToProcess.getInterfaceSimpleName(), members);
     standardMethodSynthesiser.writeEqualityMethods(w, elementToProcess.getInterfaceSimpleName(), members);
     standardMethodSynthesiser.writeJsonBasedToStringMethod(w);
     writeFactory(
@@ -60,10 +78,75 @@ public class DtoSynthesiser {
     w.close();
   }
 
+  /**
+   * The serializedType value, plus pre-quoted, pre-escaped key and type name tokens for writeTo, so that they are
+   * escaped once here rather than on every write.
+   */
+  private void writeKeyTokens(
+      final BufferedWriter w,
+      final String serializedType,
+      final List<SerializableMember> members) throws IOException {
+    w.append(String.format("" +
+            "  private static final String SERIALIZED_TYPE = %1$s;                           \n" +
+            "  private static final char[] TYPE_NAME = %2$s.toCharArray();                 \n",
+        toJavaStringLiteral(serializedType),
+        toJavaStringLiteral(JSONObject.quote(serializedType))
+    ));
+    for (final SerializableMember member : members) {
+      w.append(String.format("" +
+              "  private static final char[] %1$s = %2$s.toCharArray();                      \n",
+          keyToken(member),
+          toJavaStringLiteral(JSONObject.quote(member.getJsonFieldName()) + ":")
+      ));
+    }
+    w.newLine();
+  }
+
+  /**
+   * One EnumLookup for each enum type among the members, their elements and their map keys and values, so that enums
+   * are decoded without Enum.valueOf.
+   */
+  private void writeEnumLookups(
+      final BufferedWriter w,
+      final List<SerializableMember> members) throws IOException, InvalidTypeException {
+    final Map<String, TypeMirror> enumTypes = new TreeMap<>();
+    for (final SerializableMember member : members) {
+      final TypeMirror type = member.getTypeMirror();
+      final List<TypeMirror> candidates = new ArrayList<>();
+      candidates.add(type);
+      if (Util.isCollectionType(type)) {
+        candidates.add(Util.getCollectionMemberTypeMirror(type));
+      } else if (Util.isStringMapType(type)) {
+        final StringMapType stringMapType = StringMapType.fromTypeMirror(type);
+        candidates.add(stringMapType.getKeyType());
+        candidates.add(stringMapType.getMemberType());
+      }
+      for (final TypeMirror candidate : candidates) {
+        if (candidate != null && Util.isEnumType(candidate)) {
+          enumTypes.put(Util.enumLookupName(candidate), candidate);
+        }
+      }
+    }
+    for (final Map.Entry<String, TypeMirror> enumType : enumTypes.entrySet()) {
+      w.append(String.format("" +
+              "  private static final EnumLookup<%2$s> %1$s = new EnumLookup<>(%2$s.class);   \n",
+          enumType.getKey(),
+          enumType.getValue()
+      ));
+    }
+    if (!enumTypes.isEmpty()) {
+      w.newLine();
+    }
+  }
+
+  private static String keyToken(final SerializableMember member) {
+    return "KEY_" + member.getFieldName();
+  }
+
   private void writeFields(
       final BufferedWriter w,
       final List<SerializableMember> members) throws IOException, InvalidTypeException {
-    w.append("  private final JSONObject json;\n");
+    w.append("  private volatile JSONObject json;\n");
     for (final SerializableMember member : members) {
       w.append(String.format("" +
               "  private final %1$s %2$s;                                                     \n",
@@ -71,6 +154,102 @@ public class DtoSynthesiser {
           member.getFieldName()
       ));
     }
+    for (final SerializableMember member : members) {
+      final String jsonFormType = jsonFormType(member);
+      if (jsonFormType != null) {
+        w.append(String.format("" +
+                "  private final %1$s %2$s;                                                     \n",
+            jsonFormType,
+            jsonForm(member)
+        ));
+      }
+    }
+  }
+
+  /**
+   * The field that holds the JSON form of a member whose values are converted by the service's toJson, as those with
+   * custom serializers are. Each constructor converts them as soon as the member is known, so that a DTO never needs
+   * its service after it is built, and writes its values with the serializers that were in force when it was.
+   */
+  private static String jsonForm(final SerializableMember member) {
+    return "$" + member.getFieldName() + "Json";
+  }
+
+  /**
+   * The type of the member's JSON form field, or null if the member needs none.
+   */
+  private static String jsonFormType(final SerializableMember member) throws InvalidTypeException {
+    switch (member.getMemberType()) {
+      case NON_SERIALIZABLE_TYPE:
+        return "Object";
+
+      case COLLECTION:
+        return isSerializableElement(member.getCollectionMemberType()) ? null : "List<Object>";
+
+      case STRING_MAP:
+        return isSerializableElement(StringMapType.fromTypeMirror(member.getTypeMirror()).getMemberType())
+            ? null
+            : "Map<String, Object>";
+
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Converts each member that has a JSON form with the given service, once every member has been assigned.
+   */
+  private void writeJsonForms(
+      final BufferedWriter w,
+      final List<SerializableMember> members,
+      final String service) throws IOException, InvalidTypeException {
+    for (final SerializableMember member : members) {
+      if (jsonFormType(member) == null) {
+        continue;
+      }
+      switch (member.getMemberType()) {
+        case NON_SERIALIZABLE_TYPE:
+          w.append(String.format("" +
+                  "    this.%2$s = this.%1$s == null ? null : %3$s.toJson(this.%1$s);             \n",
+              member.getFieldName(),
+              jsonForm(member),
+              service
+          ));
+          break;
+
+        case COLLECTION:
+          w.append(String.format("" +
+                  "    this.%2$s = new ArrayList<>(this.%1$s.size());                            \n" +
+                  "    for (Object element : this.%1$s) {                                        \n" +
+                  "      this.%2$s.add(element == null ? null : %3$s.toJson(element));           \n" +
+                  "    }                                                                          \n",
+              member.getFieldName(),
+              jsonForm(member),
+              service
+          ));
+          break;
+
+        case STRING_MAP:
+          final StringMapType stringMap = StringMapType.fromTypeMirror(member.getTypeMirror());
+          w.append(String.format("" +
+                  "    this.%2$s = new LinkedHashMap<>();                                         \n" +
+                  "    for (Map.Entry<%4$s, %5$s> element : this.%1$s.entrySet()) {              \n" +
+                  "      this.%2$s.put(%6$s,                                                      \n" +
+                  "          element.getValue() == null ? null : %3$s.toJson(element.getValue())); \n" +
+                  "    }                                                                          \n",
+              member.getFieldName(),
+              jsonForm(member),
+              service,
+              stringMap.getKeyType(),
+              Util.declaredTypeToString(stringMap.getMemberType()),
+              mapKeyToString(stringMap)
+          ));
+          break;
+
+        default:
+          throw new InvalidTypeException("Unknown field type: " + member.getMemberType());
+      }
+    }
   }
 
   private void writeCopyConstructors(
@@ -80,10 +259,7 @@ public class DtoSynthesiser {
       final List<SerializableMember> members)
       throws IOException, InvalidTypeException {
     w.append(String.format("" +
-            "  private %1$s(final AbstractSerializationService service, final %2$s original) {            \n" +
-            "    json = new JSONObject();                                                   \n" +
-            "    json.put(\"serializedType\", %2$s.class.getName());                        \n" +
-            "                                                                                 \n" +
+            "  private %1$s(final SerializationContext $context, final %2$s $original) {    \n" +
             "",
         dtoName,
         interfaceName
@@ -119,7 +295,7 @@ public class DtoSynthesiser {
           throw new InvalidTypeException("Unknown field type: " + member.getMemberType());
           /*
           w.append(String.format("" +
-                  "    %1$s = original.%2$s();                                                  \n" +
+                  "    this.%1$s = $original.%2$s();                                                  \n" +
                   "    if (%1$s != null) {                                                      \n" +
                   "      json.put(\"%1$s\", %1$s);                                              \n" +
                   "    } else {                                                                 \n" +
@@ -132,6 +308,7 @@ public class DtoSynthesiser {
           */
       }
     }
+    writeJsonForms(w, members, "$context.getService()");
     w.append("  }\n");
   }
 
@@ -139,12 +316,10 @@ public class DtoSynthesiser {
       final BufferedWriter w,
       final SerializableMember member) throws IOException {
     appendCopyFragmentForPrimitive(w, String.format("" +
-            "    %1$s = original.%2$s();                                                  \n" +
-            "    json.put(\"%3$s\", %1$s);                                                \n" +
+            "    this.%1$s = $original.%2$s();                                                  \n" +
             "                                                                               \n",
         member.getFieldName(),
-        member.getGetterName(),
-        member.getJsonFieldName()
+        member.getGetterName()
     ));
   }
 
@@ -158,16 +333,10 @@ public class DtoSynthesiser {
       final BufferedWriter w,
       final SerializableMember member) throws IOException {
     w.append(String.format("" +
-            "    %1$s = original.%2$s();                                                  \n" +
-            "    if (%1$s != null) {                                                      \n" +
-            "      json.put(\"%3$s\", %1$s.name());                                       \n" +
-            "    } else {                                                                 \n" +
-            "      json.put(\"%3$s\", JSONObject.NULL);                                   \n" +
-            "    }                                                                        \n" +
+            "    this.%1$s = $original.%2$s();                                                  \n" +
             "                                                                             \n",
         member.getFieldName(),
-        member.getGetterName(),
-        member.getJsonFieldName()
+        member.getGetterName()
     ));
   }
 
@@ -182,22 +351,18 @@ public class DtoSynthesiser {
     }
     final DeclaredType collectionMemberType = member.getCollectionMemberType();
     final String elementConverter;
-    final String elementToJson;
     if (collectionMemberType == null) { // E.g. non-generic List
       elementConverter = "element";
-      elementToJson = "service.toJson(element)";
     } else {
       switch (MemberType.fromTypeMirror(collectionMemberType)) {
         case ENUM:
         case NON_SERIALIZABLE_TYPE:
         case NATIVE_TYPE:
           elementConverter = "element";
-          elementToJson = "service.toJson(element)";
           break;
 
         case SERIALIZABLE_TYPE:
-          elementConverter = String.format("(%1$s) service.createDTO(element, %1$s.class)", collectionMemberType);
-          elementToJson = String.format("((DTO) %1$sDTO).toJson()", member.getFieldName()); // TODO: HUH???
+          elementConverter = String.format("(%1$s) $context.createDTO(element, %1$s.class)", collectionMemberType);
           break;
 
         case COLLECTION:
@@ -212,22 +377,18 @@ public class DtoSynthesiser {
     }
 
     w.append(String.format("" +
-            "    %1$s%2$s %3$sBuilder = new %4$s%2$s();                                    \n" +
-            "    json.put(\"%11$s\", new JSONArray());                                    \n" +
-            "    if (original.%6$s() != null) {                                          \n" +
-            "      for(%5$s element : original.%6$s()) {                                 \n" +
+            "    %1$s%2$s $%3$sBuilder = new %4$s%2$s();                                    \n" +
+            "    if ($original.%6$s() != null) {                                          \n" +
+            "      for(%5$s element : $original.%6$s()) {                                 \n" +
             "        if (element == null) {                                              \n" +
-            "          %3$sBuilder.add(null);                                            \n" +
-            "          json.append(\"%11$s\", JSONObject.NULL);                           \n" +
+            "          $%3$sBuilder.add(null);                                            \n" +
             "        } else {                                                            \n" +
-            "          %5$s %3$sDTO = %7$s;                                              \n" +
-            "          %3$sBuilder.add(%3$sDTO);                                         \n" +
-            "          json.append(\"%11$s\", %10$s);                                     \n" +
+            "          $%3$sBuilder.add(%7$s);                                            \n" +
             "        }                                                                   \n" +
             "      }                                                                     \n" +
-            "      %3$s = %8$s(%3$sBuilder);                                             \n" +
+            "      this.%3$s = %8$s($%3$sBuilder);                                             \n" +
             "    } else {                                                                \n" +
-            "      %3$s = %9$s;                                                          \n" +
+            "      this.%3$s = %9$s;                                                          \n" +
             "    }                                                                       \n" +
             "                                                                            \n",
         Util.typeToString(member.getTypeMirror()), // 1
@@ -236,15 +397,11 @@ public class DtoSynthesiser {
             : "<" + Util.declaredTypeToString(collectionMemberType) + ">", //2
         member.getFieldName(), //3
         serializableCollectionType.concreteName, //4
-        collectionMemberType == null
-            ? "Object"
-            : Util.declaredTypeToString(collectionMemberType), // 5
+        collectionElementType(collectionMemberType), // 5
         member.getGetterName(), // 6
         elementConverter, // 7
         serializableCollectionType.toImmutable, // 8
-        serializableCollectionType.toEmpty, // 9
-        elementToJson, // 10
-        member.getJsonFieldName() // 11
+        serializableCollectionType.toEmpty // 9
     ));
   }
 
@@ -256,35 +413,19 @@ public class DtoSynthesiser {
       throw new IllegalArgumentException("Cannot determine type of Map<String, T>. " +
           "Field: " + member.getFieldName() + ", Type: " + member.getTypeMirror());
     }
-
-    final String keyToStringConverter;
-    switch (MemberType.fromTypeMirror(stringMap.getKeyType())) {
-      case ENUM:
-        keyToStringConverter = "element.getKey().name()";
-        break;
-
-      case NATIVE_TYPE: // i.e. String
-        keyToStringConverter = "element.getKey()";
-        break;
-
-      default:
-        throw new IllegalArgumentException("Cannot serialize a Map with key type of " + stringMap.getKeyType());
-    }
+    mapKeyToString(stringMap);
 
     final DeclaredType mapMemberType = stringMap.getMemberType();
     final String elementConverter;
-    final String elementToJson;
     switch (MemberType.fromTypeMirror(mapMemberType)) {
       case ENUM:
       case NON_SERIALIZABLE_TYPE:
       case NATIVE_TYPE:
         elementConverter = "element.getValue()";
-        elementToJson = "service.toJson(element.getValue())";
         break;
 
       case SERIALIZABLE_TYPE:
-        elementConverter = String.format("(%1$s) service.createDTO(element.getValue(), %1$s.class)", mapMemberType);
-        elementToJson = String.format("((DTO) %1$sDTO).toJson()", member.getFieldName());
+        elementConverter = String.format("(%1$s) $context.createDTO(element.getValue(), %1$s.class)", mapMemberType);
         break;
 
       case COLLECTION:
@@ -298,37 +439,27 @@ public class DtoSynthesiser {
     }
 
     w.append(String.format("" +
-            "    Map<%4$s, %2$s> %3$sBuilder = new HashMap<>();                          \n" +
-            "    json.put(\"%11$s\", new JSONObject());                                   \n" +
-            "    if (original.%6$s() != null) {                                          \n" +
-            "      for(Map.Entry<%4$s, %2$s> element : original.%6$s().entrySet()) {     \n" +
+            "    Map<%4$s, %2$s> $%3$sBuilder = new HashMap<>();                          \n" +
+            "    if ($original.%6$s() != null) {                                          \n" +
+            "      for(Map.Entry<%4$s, %2$s> element : $original.%6$s().entrySet()) {     \n" +
             "        if (element.getValue() == null) {                                   \n" +
-            "          %3$sBuilder.put(element.getKey(), null);                          \n" +
-            "          json.getJSONObject(\"%11$s\")                                      \n" +
-            "              .put(%5$s, JSONObject.NULL);                                  \n" +
+            "          $%3$sBuilder.put(element.getKey(), null);                          \n" +
             "        } else {                                                            \n" +
-            "          %2$s %3$sDTO = %7$s;                                              \n" +
-            "          %3$sBuilder.put(element.getKey(), %3$sDTO);                       \n" +
-            "          json.getJSONObject(\"%11$s\")                                      \n" +
-            "              .put(%5$s, %10$s);                                            \n" +
+            "          $%3$sBuilder.put(element.getKey(), %7$s);                          \n" +
             "        }                                                                   \n" +
             "      }                                                                     \n" +
-            "      %3$s = Collections.unmodifiableMap(%3$sBuilder);                      \n" +
+            "      this.%3$s = Collections.unmodifiableMap($%3$sBuilder);                      \n" +
             "    } else {                                                                \n" +
-            "      %3$s = Collections.emptyMap();                                        \n" +
+            "      this.%3$s = Collections.emptyMap();                                        \n" +
             "    }                                                                       \n" +
             "                                                                            \n",
         Util.typeToString(member.getTypeMirror()), // 1
         Util.declaredTypeToString(mapMemberType), //2
         member.getFieldName(), //3
         stringMap.getKeyType(), //4
-        keyToStringConverter, // 5
+        "unused", // 5
         member.getGetterName(), // 6
-        elementConverter, // 7
-        "unused", // 8
-        "unused", // 9
-        elementToJson, // 10
-        member.getJsonFieldName()  // 11
+        elementConverter // 7
     ));
   }
 
@@ -336,17 +467,10 @@ public class DtoSynthesiser {
       final BufferedWriter w,
       final SerializableMember member) throws IOException {
     w.append(String.format("" +
-            "    %1$s = original.%3$s();                                            \n" +
-            "    if (%1$s != null) {                                                      \n" +
-            "      json.put(\"%4$s\", service.toJson(%1$s));                           \n" +
-            "    } else {                                                                 \n" +
-            "      json.put(\"%4$s\", JSONObject.NULL);                                   \n" +
-            "    }                                                                        \n" +
+            "    this.%1$s = $original.%2$s();                                            \n" +
             "                                                                             \n",
         member.getFieldName(),
-        member.getTypeAsCode(),
-        member.getGetterName(),
-        member.getJsonFieldName()
+        member.getGetterName()
     ));
   }
 
@@ -354,41 +478,403 @@ public class DtoSynthesiser {
       final BufferedWriter w,
       final SerializableMember member) throws IOException {
     w.append(String.format("" +
-            "    final %2$s original%1$s = original.%3$s();                               \n" +
-            "    if (original%1$s != null) {                                              \n" +
-            "      %1$s = (%2$s) service.createDTO(original%1$s, %2$s.class);             \n" +
-            "      json.put(\"%4$s\", service.createJSONObject(%1$s, %2$s.class));        \n" +
+            "    final %2$s $original%1$s = $original.%3$s();                             \n" +
+            "    if ($original%1$s != null) {                                             \n" +
+            "      this.%1$s = (%2$s) $context.createDTO($original%1$s, %2$s.class);      \n" +
             "    } else {                                                                 \n" +
-            "      %1$s = null;                                                           \n" +
-            "      json.put(\"%4$s\", JSONObject.NULL);                                   \n" +
+            "      this.%1$s = null;                                                      \n" +
             "    }                                                                        \n" +
             "                                                                             \n",
         member.getFieldName(),
         member.getTypeAsCode(),
-        member.getGetterName(),
-        member.getJsonFieldName()
+        member.getGetterName()
+    ));
+  }
+
+  private static String collectionElementType(final DeclaredType collectionMemberType) {
+    return collectionMemberType == null
+        ? "Object"
+        : Util.declaredTypeToString(collectionMemberType);
+  }
+
+  private static boolean isSerializableElement(final DeclaredType collectionMemberType) {
+    return collectionMemberType != null
+        && MemberType.fromTypeMirror(collectionMemberType) == MemberType.SERIALIZABLE_TYPE;
+  }
+
+  private static String mapKeyToString(final StringMapType stringMap) {
+    switch (MemberType.fromTypeMirror(stringMap.getKeyType())) {
+      case ENUM:
+        return "element.getKey().name()";
+
+      case NATIVE_TYPE: // i.e. String
+        return "element.getKey()";
+
+      default:
+        throw new IllegalArgumentException("Cannot serialize a Map with key type of " + stringMap.getKeyType());
+    }
+  }
+
+  /**
+   * The JSONObject form of a DTO built by copying is only needed by callers of toJson(), so it is built from the
+   * fields on first use rather than alongside them in the constructor.
+   */
+  private void writeToJson(
+      final BufferedWriter w,
+      final List<SerializableMember> members)
+      throws IOException, InvalidTypeException {
+    w.append(String.format("" +
+            "  @Override                                                                      \n" +
+            "  public JSONObject toJson() {                                                   \n" +
+            "    JSONObject result = json;                                                    \n" +
+            "    if (result == null) {                                                        \n" +
+            "      result = buildJson();                                                      \n" +
+            "      json = result;                                                             \n" +
+            "    }                                                                            \n" +
+            "    return result;                                                               \n" +
+            "  }                                                                              \n" +
+            "                                                                                 \n" +
+            "  private JSONObject buildJson() {                                               \n" +
+            "    final JSONObject json = new JSONObject();                                    \n" +
+            "    json.put(\"serializedType\", SERIALIZED_TYPE);                                 \n" +
+            "                                                                                 \n" +
+            ""
+    ));
+
+    for (final SerializableMember member : members) {
+      switch (member.getMemberType()) {
+        case SERIALIZABLE_TYPE:
+          w.append(String.format("" +
+                  "    if (%1$s != null) {                                                      \n" +
+                  "      json.put(\"%2$s\", ((DTO) %1$s).toJson());                             \n" +
+                  "    } else {                                                                 \n" +
+                  "      json.put(\"%2$s\", JSONObject.NULL);                                   \n" +
+                  "    }                                                                        \n" +
+                  "                                                                             \n",
+              member.getFieldName(),
+              member.getJsonFieldName()
+          ));
+          break;
+
+        case NON_SERIALIZABLE_TYPE:
+          w.append(String.format("" +
+                  "    if (%1$s != null) {                                                      \n" +
+                  "      json.put(\"%2$s\", %3$s);                                              \n" +
+                  "    } else {                                                                 \n" +
+                  "      json.put(\"%2$s\", JSONObject.NULL);                                   \n" +
+                  "    }                                                                        \n" +
+                  "                                                                             \n",
+              member.getFieldName(),
+              member.getJsonFieldName(),
+              jsonForm(member)
+          ));
+          break;
+
+        case COLLECTION:
+          final DeclaredType collectionMemberType = member.getCollectionMemberType();
+          w.append(String.format("" +
+                  "    json.put(\"%3$s\", new JSONArray());                                     \n" +
+                  "    for(%2$s element : %1$s) {                                               \n" +
+                  "      if (element == null) {                                                 \n" +
+                  "        json.append(\"%3$s\", JSONObject.NULL);                              \n" +
+                  "      } else {                                                               \n" +
+                  "        json.append(\"%3$s\", %4$s);                                         \n" +
+                  "      }                                                                      \n" +
+                  "    }                                                                        \n" +
+                  "                                                                             \n",
+              isSerializableElement(collectionMemberType) ? member.getFieldName() : jsonForm(member),
+              isSerializableElement(collectionMemberType) ? collectionElementType(collectionMemberType) : "Object",
+              member.getJsonFieldName(),
+              isSerializableElement(collectionMemberType) ? "((DTO) element).toJson()" : "element"
+          ));
+          break;
+
+        case STRING_MAP:
+          final StringMapType stringMap = StringMapType.fromTypeMirror(member.getTypeMirror());
+          w.append(String.format("" +
+                  "    json.put(\"%5$s\", new JSONObject());                                    \n" +
+                  "    for(Map.Entry<%2$s, %3$s> element : %1$s.entrySet()) {                   \n" +
+                  "      if (element.getValue() == null) {                                      \n" +
+                  "        json.getJSONObject(\"%5$s\").put(%4$s, JSONObject.NULL);             \n" +
+                  "      } else {                                                               \n" +
+                  "        json.getJSONObject(\"%5$s\").put(%4$s, %6$s);                        \n" +
+                  "      }                                                                      \n" +
+                  "    }                                                                        \n" +
+                  "                                                                             \n",
+              isSerializableElement(stringMap.getMemberType()) ? member.getFieldName() : jsonForm(member),
+              isSerializableElement(stringMap.getMemberType()) ? stringMap.getKeyType() : "String",
+              isSerializableElement(stringMap.getMemberType())
+                  ? Util.declaredTypeToString(stringMap.getMemberType())
+                  : "Object",
+              isSerializableElement(stringMap.getMemberType()) ? mapKeyToString(stringMap) : "element.getKey()",
+              member.getJsonFieldName(),
+              isSerializableElement(stringMap.getMemberType())
+                  ? "((DTO) element.getValue()).toJson()"
+                  : "element.getValue()"
+          ));
+          break;
+
+        case ENUM:
+          w.append(String.format("" +
+                  "    if (%1$s != null) {                                                      \n" +
+                  "      json.put(\"%2$s\", %1$s.name());                                       \n" +
+                  "    } else {                                                                 \n" +
+                  "      json.put(\"%2$s\", JSONObject.NULL);                                   \n" +
+                  "    }                                                                        \n" +
+                  "                                                                             \n",
+              member.getFieldName(),
+              member.getJsonFieldName()
+          ));
+          break;
+
+        case NATIVE_TYPE:
+          w.append(String.format("" +
+                  "    json.put(\"%2$s\", %1$s);                                                \n" +
+                  "                                                                             \n",
+              member.getFieldName(),
+              member.getJsonFieldName()
+          ));
+          break;
+
+        default:
+          throw new InvalidTypeException("Unknown field type: " + member.getMemberType());
+      }
+    }
+    w.append("" +
+        "    return json;                                                                 \n" +
+        "  }                                                                              \n" +
+        "                                                                                 \n");
+  }
+
+  /**
+   * Writes the streaming equivalent of buildJson(). Null native members are omitted, exactly as JSONObject.put
+   * omits them from the tree form.
+   */
+  private void writeWriteTo(
+      final BufferedWriter w,
+      final List<SerializableMember> members)
+      throws IOException, InvalidTypeException {
+    w.append("" +
+        "  @Override                                                                      \n" +
+        "  public void writeTo(final JsonGenerator out) throws IOException {              \n" +
+        "    out.object();                                                                \n" +
+        "    out.serializedType(TYPE_NAME);                                               \n" +
+        "                                                                                 \n");
+    writeMemberWrites(w, members, false);
+  }
+
+  /**
+   * Writes a static equivalent of writeTo() that reads the members straight from the original object, for services
+   * that serialize without building a DTO first. Its output matches that of a copied DTO: nested Serializables are
+   * written as their highest @GenerateDTO interface, and null collections and maps as empty ones.
+   */
+  private void writeDirectWrite(
+      final BufferedWriter w,
+      final String interfaceName,
+      final List<SerializableMember> members)
+      throws IOException, InvalidTypeException {
+    w.append(String.format("" +
+            "  static void write(                                                             \n" +
+            "      final SerializationContext context,                                        \n" +
+            "      final %1$s original,                                                       \n" +
+            "      final JsonGenerator out) throws IOException {                              \n" +
+            "",
+        interfaceName
     ));
+    for (final SerializableMember member : members) {
+      w.append(String.format("" +
+              "    final %1$s %2$s = original.%3$s();                                         \n",
+          member.getTypeAsString(),
+          memberReference(member, true),
+          member.getGetterName()
+      ));
+    }
+    w.append("" +
+        "                                                                                 \n" +
+        "    out.object();                                                                \n" +
+        "    out.serializedType(TYPE_NAME);                                               \n" +
+        "                                                                                 \n");
+    writeMemberWrites(w, members, true);
+  }
+
+  /**
+   * Writes the body shared by writeTo() and write(), which refer to each member as memberReference does. Copied DTOs
+   * never hold null collections or maps, hold DTOs for their Serializable members, and hold the JSON forms of the rest;
+   * originals do none of these.
+   */
+  private void writeMemberWrites(
+      final BufferedWriter w,
+      final List<SerializableMember> members,
+      final boolean fromOriginal)
+      throws IOException, InvalidTypeException {
+    for (final SerializableMember member : members) {
+      final String value = memberReference(member, fromOriginal);
+      switch (member.getMemberType()) {
+        case SERIALIZABLE_TYPE:
+          w.append(String.format("" +
+                  "    out.key(%2$s);                                                           \n" +
+                  "    if (%1$s != null) {                                                      \n" +
+                  "      %3$s;                                                                  \n" +
+                  "    } else {                                                                 \n" +
+                  "      out.nullValue();                                                       \n" +
+                  "    }                                                                        \n" +
+                  "                                                                             \n",
+              value,
+              keyToken(member),
+              writeSerializable(value, member.getTypeAsCode(), fromOriginal)
+          ));
+          break;
+
+        case NON_SERIALIZABLE_TYPE:
+          w.append(String.format("" +
+                  "    out.key(%2$s);                                                           \n" +
+                  "    if (%1$s != null) {                                                      \n" +
+                  "      out.value(%3$s);                                                       \n" +
+                  "    } else {                                                                 \n" +
+                  "      out.nullValue();                                                       \n" +
+                  "    }                                                                        \n" +
+                  "                                                                             \n",
+              value,
+              keyToken(member),
+              fromOriginal ? "context.getService().toJson(" + value + ")" : "this." + jsonForm(member)
+          ));
+          break;
+
+        case COLLECTION:
+          final DeclaredType collectionMemberType = member.getCollectionMemberType();
+          final boolean serializableElements = isSerializableElement(collectionMemberType);
+          w.append(String.format("" +
+                  "    out.key(%3$s).array();                                                   \n" +
+                  "    %5$sfor(%2$s element : %1$s) {                                           \n" +
+                  "      if (element == null) {                                                 \n" +
+                  "        out.nullValue();                                                     \n" +
+                  "      } else {                                                               \n" +
+                  "        %4$s;                                                                \n" +
+                  "      }                                                                      \n" +
+                  "    }                                                                        \n" +
+                  "    out.endArray();                                                          \n" +
+                  "                                                                             \n",
+              serializableElements || fromOriginal ? value : "this." + jsonForm(member),
+              serializableElements || fromOriginal ? collectionElementType(collectionMemberType) : "Object",
+              keyToken(member),
+              serializableElements
+                  ? writeSerializable("element", collectionElementType(collectionMemberType), fromOriginal)
+                  : fromOriginal ? "out.value(context.getService().toJson(element))" : "out.value(element)",
+              fromOriginal ? "if (" + value + " != null) " : ""
+          ));
+          break;
+
+        case STRING_MAP:
+          final StringMapType stringMap = StringMapType.fromTypeMirror(member.getTypeMirror());
+          final boolean serializableValues = isSerializableElement(stringMap.getMemberType());
+          final boolean converted = !serializableValues && !fromOriginal;
+          w.append(String.format("" +
+                  "    out.key(%5$s).object();                                                  \n" +
+                  "    %7$sfor(Map.Entry<%2$s, %3$s> element : %1$s.entrySet()) {               \n" +
+                  "      out.key(%4$s);                                                         \n" +
+                  "      if (element.getValue() == null) {                                      \n" +
+                  "        out.nullValue();                                                     \n" +
+                  "      } else {                                                               \n" +
+                  "        %6$s;                                                                \n" +
+                  "      }                                                                      \n" +
+                  "    }                                                                        \n" +
+                  "    out.endObject();                                                         \n" +
+                  "                                                                             \n",
+              converted ? "this." + jsonForm(member) : value,
+              converted ? "String" : stringMap.getKeyType(),
+              converted ? "Object" : Util.declaredTypeToString(stringMap.getMemberType()),
+              converted ? "element.getKey()" : mapKeyToString(stringMap),
+              keyToken(member),
+              serializableValues
+                  ? writeSerializable(
+                      "element.getValue()", Util.declaredTypeToString(stringMap.getMemberType()), fromOriginal)
+                  : fromOriginal
+                      ? "out.value(context.getService().toJson(element.getValue()))"
+                      : "out.value(element.getValue())",
+              fromOriginal ? "if (" + value + " != null) " : ""
+          ));
+          break;
+
+        case ENUM:
+          w.append(String.format("" +
+                  "    out.key(%2$s);                                                           \n" +
+                  "    if (%1$s != null) {                                                      \n" +
+                  "      out.value(%1$s.name());                                                \n" +
+                  "    } else {                                                                 \n" +
+                  "      out.nullValue();                                                       \n" +
+                  "    }                                                                        \n" +
+                  "                                                                             \n",
+              value,
+              keyToken(member)
+          ));
+          break;
+
+        case NATIVE_TYPE:
+          if (member.getTypeMirror().getKind().isPrimitive()) {
+            w.append(String.format("" +
+                    "    out.key(%2$s).value(%1$s);                                             \n" +
+                    "                                                                             \n",
+                value,
+                keyToken(member)
+            ));
+          } else {
+            w.append(String.format("" +
+                    "    if (%1$s != null) {                                                      \n" +
+                    "      out.key(%2$s).value(%1$s);                                           \n" +
+                    "    }                                                                        \n" +
+                    "                                                                             \n",
+                value,
+                keyToken(member)
+            ));
+          }
+          break;
+
+        default:
+          throw new InvalidTypeException("Unknown field type: " + member.getMemberType());
+      }
+    }
+    w.append("" +
+        "    out.endObject();                                                             \n" +
+        "  }                                                                              \n" +
+        "                                                                                 \n");
+  }
+
+  /**
+   * How writeTo() and write() refer to a member: as a field of the DTO, or as a local read from the original. Both are
+   * spelled so that they can't be hidden by the parameters, or clash with the locals, of either method.
+   */
+  private static String memberReference(
+      final SerializableMember member,
+      final boolean fromOriginal) {
+    return (fromOriginal ? "$" : "this.") + member.getFieldName();
+  }
+
+  private static String writeSerializable(
+      final String value,
+      final String type,
+      final boolean fromOriginal) {
+    return fromOriginal
+        ? String.format("context.write(%1$s, %2$s.class, out)", value, type)
+        : String.format("((DTO) %1$s).writeTo(out)", value);
   }
 
   private void writeJsonConstructors(
       final BufferedWriter w,
       final String dtoName,
-      final String interfaceName,
       final List<SerializableMember> members)
       throws IOException, InvalidTypeException {
     // TODO: Restructure this method as per the writeCopyConstructor method using the MemberType instead of these
     // intolerable conditionals.
 
     w.append(String.format("" +
-            "  private %1$s(final AbstractSerializationService service, final JSONObject json)   \n" +
+            "  private %1$s(final AbstractSerializationService $service, final JSONObject json)  \n" +
             "      throws DeserializationException {                                             \n" +
             "    try {                                                                           \n" +
             "      this.json = json;                                                             \n" +
-            "      json.put(\"serializedType\", %2$s.class.getName());                           \n" +
+            "      json.put(\"serializedType\", SERIALIZED_TYPE);                                \n" +
             "                                                                                    \n" +
             "",
-        dtoName,
-        interfaceName
+        dtoName
     ));
 
     for (final SerializableMember member : members) {
@@ -398,7 +884,7 @@ public class DtoSynthesiser {
                   "      if (json.isNull(\"%3$s\")) {                                             \n" +
                   "        %1$s = null;                                                           \n" +
                   "      } else {                                                                 \n" +
-                  "        %1$s = (%2$s) service.deserialize(json.getJSONObject(\"%3$s\"));       \n" +
+                  "        %1$s = (%2$s) $service.deserialize(json.getJSONObject(\"%3$s\"));       \n" +
                   "      }                                                                        \n" +
                   "                                                                               \n",
               member.getFieldName(),
@@ -410,7 +896,7 @@ public class DtoSynthesiser {
                   "      if (json.isNull(\"%4$s\")) {                                             \n" +
                   "        %1$s = null;                                                           \n" +
                   "      } else {                                                                 \n" +
-                  "        %1$s = (%2$s) service.deserialize(json.get(\"%4$s\"), %3$s.class);       \n" +
+                  "        %1$s = (%2$s) $service.deserialize(json.get(\"%4$s\"), %3$s.class);       \n" +
                   "      }                                                                        \n" +
                   "                                                                               \n",
               member.getFieldName(),
@@ -425,7 +911,7 @@ public class DtoSynthesiser {
           final DeclaredType typeArgument = Util.getCollectionMemberTypeMirror(member.getTypeMirror());
           final String elementConverter;
           if (typeArgument == null) { // E.g. non-generic List
-            elementConverter = String.format("(%1$s) service.deserialize(%2$sArray.get(i), %1$s.class)",
+            elementConverter = String.format("(%1$s) $service.deserialize(%2$sArray.get(i), %1$s.class)",
                 typeArgument,
                 member.getFieldName());
           } else {
@@ -438,13 +924,13 @@ public class DtoSynthesiser {
                 break;
 
               case NON_SERIALIZABLE_TYPE:
-                elementConverter = String.format("(%1$s) service.deserialize(%2$sArray.get(i), %1$s.class)",
+                elementConverter = String.format("(%1$s) $service.deserialize(%2$sArray.get(i), %1$s.class)",
                     typeArgument,
                     member.getFieldName());
                 break;
 
               case SERIALIZABLE_TYPE:
-                elementConverter = String.format("(%1$s) service.deserialize(%2$sArray.getJSONObject(i), %1$s.class)",
+                elementConverter = String.format("(%1$s) $service.deserialize(%2$sArray.getJSONObject(i), %1$s.class)",
                     typeArgument,
                     member.getFieldName());
                 break;
@@ -487,7 +973,7 @@ public class DtoSynthesiser {
           final String keyFromStringConverter;
           switch (MemberType.fromTypeMirror(stringMapType.getKeyType())) {
             case ENUM:
-              keyFromStringConverter = stringMapType.getKeyType() + ".valueOf(key)";
+              keyFromStringConverter = Util.enumLookupName(stringMapType.getKeyType()) + ".valueOf(key)";
               break;
 
             case NATIVE_TYPE: // i.e. String
@@ -507,13 +993,13 @@ public class DtoSynthesiser {
               break;
 
             case NON_SERIALIZABLE_TYPE:
-              elementConverter = String.format("(%1$s) service.deserialize(%2$sObj.get(key), %1$s.class)",
+              elementConverter = String.format("(%1$s) $service.deserialize(%2$sObj.get(key), %1$s.class)",
                   mapMemberDeclaredType,
                   member.getFieldName());
               break;
 
             case SERIALIZABLE_TYPE:
-              elementConverter = String.format("(%1$s) service.deserialize(%2$sObj.getJSONObject(key), %1$s.class)",
+              elementConverter = String.format("(%1$s) $service.deserialize(%2$sObj.getJSONObject(key), %1$s.class)",
                   mapMemberDeclaredType,
                   member.getFieldName());
               break;
@@ -556,7 +1042,9 @@ public class DtoSynthesiser {
                   "      }                                                                        \n" +
                   "                                                                               \n",
               member.getFieldName(),
-              member.getTypeMirror(),
+              Util.isEnumType(member.getTypeMirror())
+                  ? Util.enumLookupName(member.getTypeMirror())
+                  : member.getTypeMirror(),
               member.getJsonFieldName()
           ));
         } else {
@@ -569,6 +1057,7 @@ public class DtoSynthesiser {
         }
       }
     }
+    writeJsonForms(w, members, "$service");
     w.append("" +
             "    } catch (final JSONException e) {                                          \n" +
             "      throw new IllegalArgumentException(e);                                   \n" +
@@ -578,6 +1067,261 @@ public class DtoSynthesiser {
     );
   }
 
+  /**
+   * Writes the constructor that binds the rest of an object straight from the parser, once its serializedType has been
+   * read. Each member is read into a local as its name comes up, so primitives are never boxed and no JSONObject is
+   * built; the members are converted as the JSONObject constructor would convert them, and a name that comes up twice
+   * is rejected as JSONObject would reject it. The locals are named by bindingLocal, so that they can't clash with
+   * the parameters, or each other.
+   */
+  private void writeBindingConstructor(
+      final BufferedWriter w,
+      final String dtoName,
+      final List<SerializableMember> members)
+      throws IOException, InvalidTypeException {
+    w.append(String.format("" +
+            "  private %1$s(final AbstractSerializationService service, final JsonParser in)     \n" +
+            "      throws DeserializationException {                                             \n" +
+            "",
+        dtoName
+    ));
+
+    for (final SerializableMember member : members) {
+      final TypeMirror type = member.getTypeMirror();
+      if (Util.isCollectionType(type)) {
+        w.append(String.format("" +
+                "    %1$s<%2$s> %3$sBuilder = new %4$s<>();                                        \n",
+            Util.typeToString(type),
+            Util.getCollectionMemberTypeMirror(type),
+            bindingLocal(member),
+            SerializableCollectionType.fromTypeMirror(type).concreteName
+        ));
+      } else if (Util.isStringMapType(type)) {
+        final StringMapType stringMapType = StringMapType.fromTypeMirror(type);
+        w.append(String.format("" +
+                "    Map<%1$s, %2$s> %3$sBuilder = new HashMap<>();                                 \n",
+            stringMapType.getKeyType(),
+            stringMapType.getMemberType(),
+            bindingLocal(member)
+        ));
+      } else if (type.getKind().isPrimitive()) {
+        w.append(String.format("" +
+                "    %1$s %2$s = %3$s;                                                             \n",
+            member.getTypeAsString(),
+            bindingLocal(member),
+            type.getKind() == TypeKind.BOOLEAN ? "false" : "0"
+        ));
+      } else {
+        w.append(String.format("" +
+                "    %1$s %2$s = null;                                                             \n",
+            member.getTypeAsString(),
+            bindingLocal(member)
+        ));
+      }
+      w.append(String.format("" +
+              "    boolean %1$sFound = false;                                                     \n",
+          bindingLocal(member)
+      ));
+    }
+    w.append("" +
+        "    Set<String> skippedNames = null;                                                \n");
+
+    w.append("" +
+        "                                                                                    \n" +
+        "    try {                                                                           \n" +
+        "      for (String memberName = in.nextName(); memberName != null; memberName = in.nextName()) {\n" +
+        "        switch (memberName) {                                                       \n");
+    for (final SerializableMember member : members) {
+      w.append(String.format("" +
+              "          case %1$s:                                                             \n" +
+              "            if (%2$sFound) {                                                      \n" +
+              "              throw in.duplicateName(memberName);                                 \n" +
+              "            }                                                                      \n" +
+              "            %2$sFound = true;                                                      \n",
+          toJavaStringLiteral(member.getJsonFieldName()),
+          bindingLocal(member)
+      ));
+      appendBindingFragment(w, member);
+      w.append("" +
+          "            break;                                                                \n" +
+          "                                                                                  \n");
+    }
+    if (!hasJsonFieldNamed(members, "serializedType")) {
+      w.append("" +
+          "          case \"serializedType\":                                                   \n" +
+          "            throw in.duplicateName(memberName);                                       \n" +
+          "                                                                                  \n");
+    }
+    w.append("" +
+        "          default:                                                                  \n" +
+        "            if (skippedNames == null) {                                             \n" +
+        "              skippedNames = new HashSet<>();                                       \n" +
+        "            }                                                                       \n" +
+        "            if (!skippedNames.add(memberName)) {                                    \n" +
+        "              throw in.duplicateName(memberName);                                   \n" +
+        "            }                                                                       \n" +
+        "            in.skipValue();                                                         \n" +
+        "        }                                                                           \n" +
+        "      }                                                                             \n" +
+        "    } catch (final JSONException e) {                                               \n" +
+        "      throw new IllegalArgumentException(e);                                        \n" +
+        "    }                                                                               \n" +
+        "                                                                                    \n");
+
+    for (final SerializableMember member : members) {
+      final TypeMirror type = member.getTypeMirror();
+      if (Util.isCollectionType(type)) {
+        w.append(String.format("" +
+                "    this.%1$s = %2$s(%3$sBuilder);                                                \n",
+            member.getFieldName(),
+            SerializableCollectionType.fromTypeMirror(type).toImmutable,
+            bindingLocal(member)
+        ));
+      } else if (Util.isStringMapType(type)) {
+        w.append(String.format("" +
+                "    this.%1$s = Collections.unmodifiableMap(%2$sBuilder);                          \n",
+            member.getFieldName(),
+            bindingLocal(member)
+        ));
+      } else if (type.getKind().isPrimitive()) {
+        w.append(String.format("" +
+                "    if (!%2$sFound) {                                                              \n" +
+                "      throw new IllegalArgumentException(in.missingMember(%3$s));                  \n" +
+                "    }                                                                             \n" +
+                "    this.%1$s = %2$s;                                                             \n",
+            member.getFieldName(),
+            bindingLocal(member),
+            toJavaStringLiteral(member.getJsonFieldName())
+        ));
+      } else {
+        w.append(String.format("" +
+                "    this.%1$s = %2$s;                                                             \n",
+            member.getFieldName(),
+            bindingLocal(member)
+        ));
+      }
+    }
+    writeJsonForms(w, members, "service");
+    w.append("" +
+        "  }                                                                                 \n" +
+        "                                                                                    \n");
+  }
+
+  private void appendBindingFragment(
+      final BufferedWriter w,
+      final SerializableMember member) throws IOException, InvalidTypeException {
+    final TypeMirror type = member.getTypeMirror();
+    if (Util.isCollaborator(type)) {
+      w.append(String.format("" +
+              "            %1$s = (%2$s) service.deserialize(in, %3$s.class);                    \n",
+          bindingLocal(member),
+          Util.declaredTypeToString((DeclaredType) type),
+          Util.degenerify(Util.declaredTypeToString((DeclaredType) type))
+      ));
+    } else if (Util.isCollectionType(type)) {
+      w.append(String.format("" +
+              "            in.beginArray();                                                       \n" +
+              "            for (boolean hasElement = in.firstElement(); hasElement; hasElement = in.nextElement()) {\n" +
+              "              %1$sBuilder.add(%2$s);                                               \n" +
+              "            }                                                                      \n",
+          bindingLocal(member),
+          bindElement(Util.getCollectionMemberTypeMirror(type), member)
+      ));
+    } else if (Util.isStringMapType(type)) {
+      final StringMapType stringMapType = StringMapType.fromTypeMirror(type);
+      final String keyFromStringConverter;
+      switch (MemberType.fromTypeMirror(stringMapType.getKeyType())) {
+        case ENUM:
+          keyFromStringConverter = Util.enumLookupName(stringMapType.getKeyType()) + ".valueOf(entryKey)";
+          break;
+
+        case NATIVE_TYPE: // i.e. String
+          keyFromStringConverter = "entryKey";
+          break;
+
+        default:
+          throw new IllegalArgumentException("Cannot serialize a Map with key type " + stringMapType.getKeyType());
+      }
+      w.append(String.format("" +
+              "            in.beginObject();                                                      \n" +
+              "            for (String entryKey = in.firstName(); entryKey != null; entryKey = in.nextName()) {\n" +
+              "              %1$sBuilder.put(%2$s, in.nextIsNull() ? null : %3$s);               \n" +
+              "            }                                                                      \n",
+          bindingLocal(member),
+          keyFromStringConverter,
+          bindElement(stringMapType.getMemberType(), member)
+      ));
+    } else if (Util.isEnumType(type)) {
+      w.append(String.format("" +
+              "            %1$s = in.nextIsNull() ? null : in.nextEnum(%2$s);                    \n",
+          bindingLocal(member),
+          Util.enumLookupName(type)
+      ));
+    } else if (hasValueOfMethod(type)) {
+      w.append(String.format("" +
+              "            %1$s = in.nextIsNull() ? null : %2$s.valueOf(String.valueOf(in.nextValue()));\n",
+          bindingLocal(member),
+          type
+      ));
+    } else {
+      w.append(String.format("" +
+              "            %1$s = %2$s;                                                           \n",
+          bindingLocal(member),
+          Util.typeToParserReader(type)
+      ));
+    }
+  }
+
+  private static boolean hasJsonFieldNamed(
+      final List<SerializableMember> members,
+      final String name) {
+    for (final SerializableMember member : members) {
+      if (member.getJsonFieldName().equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The local a member is bound into. Members are named like Java identifiers, so no member's local can be the name of
+   * a parameter or of another local, none of which start with '$'.
+   */
+  private static String bindingLocal(final SerializableMember member) {
+    return "$" + member.getFieldName();
+  }
+
+  /**
+   * The expression that binds one element of a collection, or one value of a map.
+   */
+  private static String bindElement(
+      final DeclaredType elementType,
+      final SerializableMember member) throws InvalidTypeException {
+    if (elementType == null) { // E.g. non-generic List
+      return "service.deserialize(in, Object.class)";
+    }
+    switch (MemberType.fromTypeMirror(elementType)) {
+      case ENUM:
+      case NATIVE_TYPE:
+        return Util.typeToParserReader(elementType);
+
+      case NON_SERIALIZABLE_TYPE:
+      case SERIALIZABLE_TYPE:
+        return String.format("(%1$s) service.deserialize(in, %2$s.class)",
+            elementType,
+            Util.degenerify(elementType.toString()));
+
+      case COLLECTION:
+        // TODO: Support collections of collections.
+        throw new IllegalArgumentException("Collections of collections are not yet supported. Field: " +
+            member.getFieldName());
+
+      default:
+        throw new IllegalArgumentException("Cannot have a collection of members of type " + elementType
+            + ". Field: " + member.getFieldName());
+    }
+  }
+
   private void writeAccessors(
       final BufferedWriter w,
       final List<SerializableMember> members) throws IOException, InvalidTypeException {
@@ -594,12 +1338,6 @@ public class DtoSynthesiser {
           member.getFieldName()
       ));
     }
-
-    w.append("  @Override\n");
-    w.append("  public JSONObject toJson() {\n");
-    w.append("    return json;\n");
-    w.append("  }\n");
-    w.newLine();
   }
 
   private void writeFactory(
@@ -612,8 +1350,8 @@ public class DtoSynthesiser {
             "  public static class Factory implements ObjectFactory<%1$s> {                   \n" +
             "                                                                                 \n" +
             "    @Override                                                                    \n" +
-            "    public DTO createDTO(AbstractSerializationService service, %1$s original) {  \n" +
-            "      return new %2$s(service, original);                                        \n" +
+            "    public DTO createDTO(SerializationContext context, %1$s original) {          \n" +
+            "      return new %2$s(context, original);                                        \n" +
             "    }                                                                            \n" +
             "                                                                                 \n" +
             "    @Override                                                                    \n" +
@@ -621,6 +1359,18 @@ public class DtoSynthesiser {
             "        throws DeserializationException {                                        \n" +
             "      return new %2$s(service, json);                                            \n" +
             "    }                                                                            \n" +
+            "                                                                                 \n" +
+            "    @Override                                                                    \n" +
+            "    public DTO createDTO(AbstractSerializationService service, JsonParser in)    \n" +
+            "        throws DeserializationException {                                        \n" +
+            "      return new %2$s(service, in);                                              \n" +
+            "    }                                                                            \n" +
+            "                                                                                 \n" +
+            "    @Override                                                                    \n" +
+            "    public void write(SerializationContext context, %1$s original, JsonGenerator out)\n" +
+            "        throws IOException {                                                     \n" +
+            "      %2$s.write(context, original, out);                                        \n" +
+            "    }                                                                            \n" +
             "  }                                                                              \n" +
             "",
         interfaceName, dtoName
@@ -22,6 +22,7 @@ public final class ElementToProcess {
   private final String interfaceSimpleName;
   private final List<SerializableMember> members;
   private final String validatorFullName;
+  private final String typeId;
 
   public ElementToProcess(
       final ProcessingEnvironment processingEnvironment,
@@ -45,14 +46,20 @@ public final class ElementToProcess {
               "Just use GenerateDTO.");
     }
 
-    final AnnotationValue validatorValue = getValidatorValue(interfaceElement);
+    final AnnotationValue validatorValue = getAnnotationValue(interfaceElement, "validator");
     validatorFullName = validatorValue == null
         ? null
         : validatorValue.getValue().toString();
+
+    final AnnotationValue typeIdValue = getAnnotationValue(interfaceElement, "typeId");
+    typeId = typeIdValue == null || typeIdValue.getValue().toString().isEmpty()
+        ? null
+        : typeIdValue.getValue().toString();
   }
 
-  private AnnotationValue getValidatorValue(
-      final TypeElement interfaceElement) {
+  private AnnotationValue getAnnotationValue(
+      final TypeElement interfaceElement,
+      final String name) {
     final AnnotationMirror generateDtoAnnotation = getAnnotation(interfaceElement, GenerateDTO.class);
     final AnnotationMirror annotation = generateDtoAnnotation != null
         ? generateDtoAnnotation
@@ -64,7 +71,7 @@ public final class ElementToProcess {
 
     for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
         : annotation.getElementValues().entrySet()) {
-      if (entry.getKey().getSimpleName().toString().equals("validator")) {
+      if (entry.getKey().getSimpleName().toString().equals(name)) {
         return entry.getValue();
       }
     }
@@ -102,6 +109,28 @@ public final class ElementToProcess {
     return interfaceSimpleName;
   }
 
+  /**
+   * The name Class.getName() will return for the interface, i.e. with '$' separating nested types.
+   */
+  public String getInterfaceBinaryName() {
+    final String binaryName = interfaceSimpleName.replace('.', '$');
+    return getPackageName().isEmpty() ? binaryName : getPackageName() + "." + binaryName;
+  }
+
+  /**
+   * The GenerateDTO typeId, or null if the interface is serialized under its class name.
+   */
+  public String getTypeId() {
+    return typeId;
+  }
+
+  /**
+   * The value written as the serializedType of the interface's DTOs.
+   */
+  public String getSerializedType() {
+    return typeId != null ? typeId : getInterfaceBinaryName();
+  }
+
   public List<SerializableMember> getSerializableMembers() {
     return members;
   }
@@ -1,6 +1,7 @@
 package com.moozvine.detox.processor;
 
 import com.moozvine.detox.GenerateDTO;
+import com.moozvine.detox.TypeRegistry;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.RoundEnvironment;
@@ -8,13 +9,58 @@ import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
 
 @SupportedAnnotationTypes("com.moozvine.detox.GenerateDTO")
 public class GenerateDTOProcessor extends AbstractProcessor {
+  /**
+   * Read back by ObjectFactoryCache to resolve type ids, including those of interfaces the registry can't name.
+   */
+  private static final String TYPE_ID_INDEX = "META-INF/detox/type-ids.properties";
+
+  /**
+   * Read back by ObjectFactoryCache, through ServiceLoader, to find each module's generated TypeRegistry.
+   */
+  private static final String REGISTRY_INDEX = "META-INF/services/" + TypeRegistry.class.getName();
+  private static final String REGISTRY_SIMPLE_NAME = "DetoxTypeRegistry_";
+  private static final Pattern VALID_TYPE_ID = Pattern.compile("[A-Za-z0-9_.$-]+");
+
+  /**
+   * Type ids seen so far in this compilation, mapped to the binary names of their interfaces.
+   */
+  private final Map<String, String> typeIds = new TreeMap<>();
+
+  /**
+   * The binary names of every interface processed so far in this compilation.
+   */
+  private final Set<String> compiled = new HashSet<>();
+
+  /**
+   * The public interfaces processed so far in this compilation, by binary name, for the registry.
+   */
+  private final Map<String, ElementToProcess> processed = new TreeMap<>();
+
+  /**
+   * The name of the registry written for them, once it has been.
+   */
+  private String registryName;
+
   @Override
   public boolean process(
       final Set<? extends TypeElement> annotations,
@@ -28,6 +74,24 @@ public class GenerateDTOProcessor extends AbstractProcessor {
         error("Invalid serializable: " + e.getMessage());
       }
     }
+    if (roundEnv.processingOver() && !compiled.isEmpty()) {
+      try {
+        writeTypeIdIndex();
+      } catch (final IOException e) {
+        error("Unable to write " + TYPE_ID_INDEX + "; " + e.getMessage());
+      }
+    }
+    try {
+      if (registryName == null && !processed.isEmpty() && !roundEnv.processingOver()
+          && roundEnv.getElementsAnnotatedWith(GenerateDTO.class).isEmpty()) {
+        writeRegistry();
+      }
+      if (roundEnv.processingOver() && registryName != null) {
+        writeRegistryIndex();
+      }
+    } catch (final IOException e) {
+      error("Unable to write the type registry; " + e.getMessage());
+    }
     return true;
   }
 
@@ -40,10 +104,154 @@ public class GenerateDTOProcessor extends AbstractProcessor {
     }
     final ElementToProcess elementToProcess
         = new ElementToProcess(processingEnv, (TypeElement) element);
+    registerTypeId(elementToProcess);
+    compiled.add(elementToProcess.getInterfaceBinaryName());
+    if (isPublic(element)) {
+      processed.put(elementToProcess.getInterfaceBinaryName(), elementToProcess);
+    }
     new DtoSynthesiser(processingEnv).writeDtoFor(elementToProcess);
     new BuilderSynthesiser(processingEnv).writeBuilderFor(elementToProcess);
   }
 
+  /**
+   * Whether the element, and every type it is nested in, is public, so that a registry in another package can name
+   * it. Any other interface is left for ObjectFactoryCache to find by its class name.
+   */
+  private static boolean isPublic(final Element element) {
+    for (Element e = element; e.getKind().isInterface() || e.getKind().isClass(); e = e.getEnclosingElement()) {
+      if (!e.getModifiers().contains(Modifier.PUBLIC)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void registerTypeId(final ElementToProcess elementToProcess) throws InvalidTypeException {
+    final String typeId = elementToProcess.getTypeId();
+    if (typeId == null) {
+      return;
+    }
+    if (!VALID_TYPE_ID.matcher(typeId).matches()) {
+      throw new InvalidTypeException("Type id '" + typeId + "' of " + elementToProcess.getInterfaceBinaryName()
+          + " may only contain letters, digits, '_', '.', '$' and '-'");
+    }
+    final String existing = typeIds.put(typeId, elementToProcess.getInterfaceBinaryName());
+    if (existing != null && !existing.equals(elementToProcess.getInterfaceBinaryName())) {
+      throw new InvalidTypeException("Type id '" + typeId + "' is used by both " + existing
+          + " and " + elementToProcess.getInterfaceBinaryName());
+    }
+  }
+
+  /**
+   * Writes the type ids of this compilation along with those already in the index, left there by earlier compilations
+   * into the same output, so that an incremental build which recompiles only some interfaces keeps the ids of the
+   * rest. Those of the interfaces compiled now replace whatever they had before.
+   */
+  private void writeTypeIdIndex() throws IOException {
+    final Map<String, String> merged = new TreeMap<>();
+    for (final String line : readIndex(TYPE_ID_INDEX)) {
+      final int separator = line.indexOf('=');
+      if (separator > 0 && !compiled.contains(line.substring(separator + 1))) {
+        merged.put(line.substring(0, separator), line.substring(separator + 1));
+      }
+    }
+    for (final Map.Entry<String, String> entry : typeIds.entrySet()) {
+      final String existing = merged.put(entry.getKey(), entry.getValue());
+      if (existing != null) {
+        error("Type id '" + entry.getKey() + "' is used by both " + existing + " and " + entry.getValue());
+      }
+    }
+    if (merged.isEmpty()) {
+      return;
+    }
+    final FileObject index = processingEnv.getFiler().createResource(
+        StandardLocation.CLASS_OUTPUT, "", TYPE_ID_INDEX);
+    try (final Writer w = index.openWriter()) {
+      for (final Map.Entry<String, String> entry : merged.entrySet()) {
+        w.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+      }
+    }
+  }
+
+  /**
+   * The lines of an index in the class output, as an earlier compilation left it, or none if there is no such index.
+   */
+  private List<String> readIndex(final String name) {
+    final List<String> result = new ArrayList<>();
+    try {
+      final FileObject index = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", name);
+      try (final BufferedReader r = new BufferedReader(index.openReader(true))) {
+        for (String line = r.readLine(); line != null; line = r.readLine()) {
+          line = line.trim();
+          if (!line.isEmpty() && !line.startsWith("#")) {
+            result.add(line);
+          }
+        }
+      }
+    } catch (final IOException | IllegalArgumentException e) {
+      // No earlier index.
+    }
+    return result;
+  }
+
+  /**
+   * Writes a TypeRegistry for every interface processed, named for the set of them so that modules sharing a package
+   * don't collide. It is written in the first round after the DTOs, rather than the last, so that it gets compiled
+   * along with everything else.
+   */
+  private void writeRegistry() throws IOException {
+    final ElementToProcess first = processed.values().iterator().next();
+    final String registrySimpleName = REGISTRY_SIMPLE_NAME
+        + String.format("%08x", processed.keySet().toString().hashCode());
+    registryName = first.getPackageName().isEmpty()
+        ? registrySimpleName
+        : first.getPackageName() + "." + registrySimpleName;
+
+    final JavaFileObject source = processingEnv.getFiler().createSourceFile(registryName);
+    try (final Writer w = source.openWriter()) {
+      if (!first.getPackageName().isEmpty()) {
+        w.append(String.format("package %s;%n%n", first.getPackageName()));
+      }
+      w.append(String.format("import %s;%n", TypeRegistry.class.getName()));
+      w.append(String.format("%n"));
+      w.append(String.format("public final class %s implements TypeRegistry {%n", registrySimpleName));
+      w.append(String.format("  @Override%n"));
+      w.append(String.format("  public void registerAll(final Registrar registrar) {%n"));
+      for (final ElementToProcess element : processed.values()) {
+        final String interfaceName = element.getPackageName().isEmpty()
+            ? element.getInterfaceSimpleName()
+            : element.getPackageName() + "." + element.getInterfaceSimpleName();
+        w.append(String.format("    registrar.register(%s.class, %s, new %s.Factory());%n",
+            interfaceName,
+            element.getTypeId() == null ? "null" : "\"" + element.getTypeId() + "\"",
+            element.getDtoFullName()));
+      }
+      w.append(String.format("  }%n"));
+      w.append(String.format("}%n"));
+    }
+  }
+
+  /**
+   * Lists the registry written now along with those listed by earlier compilations into the same output, less any
+   * that no longer exist.
+   */
+  private void writeRegistryIndex() throws IOException {
+    final Set<String> registries = new TreeSet<>();
+    for (final String existing : readIndex(REGISTRY_INDEX)) {
+      if (processingEnv.getElementUtils().getTypeElement(existing) != null) {
+        registries.add(existing);
+      }
+    }
+    registries.add(registryName);
+    final FileObject index = processingEnv.getFiler().createResource(
+        StandardLocation.CLASS_OUTPUT, "", REGISTRY_INDEX);
+    try (final Writer w = index.openWriter()) {
+      for (final String registry : registries) {
+        w.append(registry).append('\n');
+      }
+    }
+  }
+
   private void error(final String message) {
     processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message);
   }
@@ -115,7 +115,7 @@ public class StandardMethodSynthesiser {
         "  @Override                                                       \n" +
         "  public String toString() {                                      \n" +
         "    try {                                                         \n" +
-        "      return json.toString(2);                                    \n" +
+        "      return toJson().toString(2);                                \n" +
         "    } catch (JSONException impossible) {                          \n" +
         "      throw new RuntimeException(impossible);                     \n" +
         "    }                                                             \n" +
@@ -166,6 +166,13 @@ public final class Util {
     return typeElement.getSuperclass().toString().startsWith("java.lang.Enum<");
   }
 
+  /**
+   * The name of the static EnumLookup that a generated DTO decodes the given enum type with.
+   */
+  static String enumLookupName(final TypeMirror value) {
+    return "ENUM_" + value.toString().replace('.', '_');
+  }
+
   static String degenerify(final String possiblyGenerifiedType) {
     return possiblyGenerifiedType.replaceAll("<.*>", "");
   }
@@ -203,6 +210,11 @@ public final class Util {
               jsonVariableName, indexVariable);
         } else if (NativeType.isNativeType(value)) {
           return jsonVariableName + "." + getPrimitiveJSONGetter((DeclaredType) value) + "(" + indexVariable + ")";
+        } else if (isEnumType(value)) {
+          return String.format("%1$s.valueOf(%2$s.getString(%3$s))",
+              enumLookupName(value),
+              jsonVariableName,
+              indexVariable);
         } else if (hasValueOfMethod(value)) {
           return String.format("%1$s.valueOf(%2$s.getString(%3$s))",
               value.toString(),
@@ -217,6 +229,43 @@ public final class Util {
     }
   }
 
+  /**
+   * The expression that reads a value of the given type from the JsonParser "in", converting it as the equivalent
+   * JSONObject getter would.
+   */
+  static String typeToParserReader(final TypeMirror value) throws InvalidTypeException {
+    switch (value.getKind()) {
+      case BOOLEAN:
+      case DOUBLE:
+      case INT:
+      case LONG:
+        return "in.next" + value.getKind().name().substring(0, 1) + value.getKind().name().substring(1).toLowerCase()
+            + "()";
+      case BYTE:
+      case CHAR:
+      case SHORT:
+        return "(" + value.getKind().name().toLowerCase() + ") in.nextInt()";
+
+      case FLOAT:
+        return "(float) in.nextDouble()";
+
+      case DECLARED:
+        if (isString(value)) {
+          return "in.nextString()";
+        } else if (NativeType.isNativeType(value)) {
+          return "in." + getPrimitiveJSONGetter((DeclaredType) value).replace("get", "next") + "()";
+        } else if (isEnumType(value)) {
+          return "in.nextEnum(" + enumLookupName(value) + ")";
+        } else if (hasValueOfMethod(value)) {
+          return value.toString() + ".valueOf(in.nextString())";
+        } else {
+          return "(" + value.toString() + ") in.nextValue()";
+        }
+      default:
+        throw new InvalidTypeException(value.getKind() + " not yet currently supported");
+    }
+  }
+
   static String typeToJsonGetter(
       final String jsonVariableName,
       final TypeMirror value,
@@ -328,4 +377,23 @@ public final class Util {
           + stripped.substring(1);
     }
   }
+
+  /**
+   * Renders a string as a Java string literal, quotes included, that is safe to write into generated source
+   * whatever the source encoding.
+   */
+  public static String toJavaStringLiteral(final String value) {
+    final StringBuilder result = new StringBuilder(value.length() + 8).append('"');
+    for (int i = 0; i < value.length(); ++i) {
+      final char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        result.append('\\').append(c);
+      } else if (c < ' ' || c > '~') {
+        result.append(String.format("\\u%04x", (int) c));
+      } else {
+        result.append(c);
+      }
+    }
+    return result.append('"').toString();
+  }
 }
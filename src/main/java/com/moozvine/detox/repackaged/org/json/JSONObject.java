@@ -1200,15 +1200,67 @@ public class JSONObject {
    * @return A String correctly formatted for insertion in a JSON text.
    */
   public static String quote(String string) {
-    StringWriter sw = new StringWriter();
-    synchronized (sw.getBuffer()) {
-      try {
-        return quote(string, sw).toString();
-      } catch (IOException ignored) {
-        // will never happen - we are writing to a string writer
-        return "";
+    if (string == null || string.length() == 0) {
+      return "\"\"";
+    }
+    if (firstEscapeIndex(string) < 0) {
+      return new StringBuilder(string.length() + 2)
+          .append('"').append(string).append('"').toString();
+    }
+    StringWriter sw = new StringWriter(string.length() + 16);
+    try {
+      return quote(string, sw).toString();
+    } catch (IOException ignored) {
+      // will never happen - we are writing to a string writer
+      return "";
+    }
+  }
+
+  /**
+   * Escape actions for the ASCII range: 0 means the char is copied as-is,
+   * UNICODE_ESCAPE means it is written as a \\uhhhh escape, and anything else
+   * is the char to write after a backslash. '/' is only escaped when it
+   * follows '<', so that "</" can't close an HTML script block.
+   */
+  private static final char[] ESCAPES = new char[128];
+  private static final char UNICODE_ESCAPE = '\uffff';
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  static {
+    for (int i = 0; i < ' '; i += 1) {
+      ESCAPES[i] = UNICODE_ESCAPE;
+    }
+    ESCAPES['"'] = '"';
+    ESCAPES['\\'] = '\\';
+    ESCAPES['/'] = '/';
+    ESCAPES['\b'] = 'b';
+    ESCAPES['\t'] = 't';
+    ESCAPES['\n'] = 'n';
+    ESCAPES['\f'] = 'f';
+    ESCAPES['\r'] = 'r';
+  }
+
+  private static boolean needsUnicodeEscape(char c) {
+    return (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100');
+  }
+
+  /**
+   * Returns the index of the first char in the string that quote would have
+   * to escape, or -1 if the string can be copied as-is.
+   */
+  private static int firstEscapeIndex(String string) {
+    final int len = string.length();
+    for (int i = 0; i < len; i += 1) {
+      char c = string.charAt(i);
+      if (c < 128) {
+        if (ESCAPES[c] != 0 && (c != '/' || (i > 0 && string.charAt(i - 1) == '<'))) {
+          return i;
+        }
+      } else if (needsUnicodeEscape(c)) {
+        return i;
       }
     }
+    return -1;
   }
 
   public static Writer quote(String string, Writer w) throws IOException {
@@ -1217,54 +1269,47 @@ public class JSONObject {
       return w;
     }
 
-    char b;
-    char c = 0;
-    String hhhh;
-    int i;
-    int len = string.length();
-
+    final int len = string.length();
+    int start = firstEscapeIndex(string);
     w.write('"');
-    for (i = 0; i < len; i += 1) {
-      b = c;
-      c = string.charAt(i);
-      switch (c) {
-        case '\\':
-        case '"':
-          w.write('\\');
-          w.write(c);
-          break;
-        case '/':
-          if (b == '<') {
-            w.write('\\');
-          }
-          w.write(c);
-          break;
-        case '\b':
-          w.write("\\b");
-          break;
-        case '\t':
-          w.write("\\t");
-          break;
-        case '\n':
-          w.write("\\n");
-          break;
-        case '\f':
-          w.write("\\f");
-          break;
-        case '\r':
-          w.write("\\r");
-          break;
-        default:
-          if (c < ' ' || (c >= '\u0080' && c < '\u00a0')
-              || (c >= '\u2000' && c < '\u2100')) {
-            w.write("\\u");
-            hhhh = Integer.toHexString(c);
-            w.write("0000", 0, 4 - hhhh.length());
-            w.write(hhhh);
-          } else {
-            w.write(c);
-          }
+    if (start < 0) {
+      w.write(string);
+      w.write('"');
+      return w;
+    }
+    w.write(string, 0, start);
+
+    // Copy runs of clean chars in bulk, stopping only at chars that need escaping.
+    for (int i = start; i < len; i += 1) {
+      char c = string.charAt(i);
+      char escape;
+      if (c < 128) {
+        escape = ESCAPES[c];
+        if (escape == 0 || (c == '/' && (i == 0 || string.charAt(i - 1) != '<'))) {
+          continue;
+        }
+      } else if (needsUnicodeEscape(c)) {
+        escape = UNICODE_ESCAPE;
+      } else {
+        continue;
+      }
+      if (i > start) {
+        w.write(string, start, i - start);
       }
+      w.write('\\');
+      if (escape == UNICODE_ESCAPE) {
+        w.write('u');
+        w.write(HEX_DIGITS[(c >> 12) & 0xf]);
+        w.write(HEX_DIGITS[(c >> 8) & 0xf]);
+        w.write(HEX_DIGITS[(c >> 4) & 0xf]);
+        w.write(HEX_DIGITS[c & 0xf]);
+      } else {
+        w.write(escape);
+      }
+      start = i + 1;
+    }
+    if (len > start) {
+      w.write(string, start, len - start);
     }
     w.write('"');
     return w;
@@ -1544,7 +1589,7 @@ public class JSONObject {
     return this.write(writer, 0, 0);
   }
 
-  static final Writer writeValue(Writer writer, Object value,
+  public static final Writer writeValue(Writer writer, Object value,
       int indentFactor, int indent) throws JSONException, IOException {
     if (value == null || value.equals(null)) {
       writer.write("null");
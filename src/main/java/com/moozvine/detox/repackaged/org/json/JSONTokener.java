@@ -1,7 +1,9 @@
 package com.moozvine.detox.repackaged.org.json;
 
 import java.io.*;
+import java.math.BigDecimal;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /*
 Copyright (c) 2002 JSON.org
@@ -31,19 +33,105 @@ SOFTWARE.
  * A JSONTokener takes a source string and extracts characters and tokens from
  * it. It is used by the JSONObject and JSONArray constructors to parse
  * JSON source strings.
+ * <p>
+ * The source is held in a char[] window: the whole of a string, or a buffer
+ * that is refilled from a Reader in bulk. Strings and unquoted values are
+ * scanned a run at a time within the window, and the index, line and
+ * character reported in syntax errors are only worked out when an error is
+ * reported, by replaying the chars consumed so far.
  * @author JSON.org
  * @version 2012-02-16
  */
 public class JSONTokener {
 
-  private long    character;
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Something that finds a value for the chars of a string, without a
+   * String being made of them first.
+   */
+  public interface CharLookup<T> {
+    /**
+     * @return The value for the given chars, or null if there is none.
+     */
+    T lookup(char[] chars, int offset, int length);
+  }
+
+  /**
+   * What nextNumber() read: nothing, an integer held in longValue(), or a
+   * number with a fraction or exponent held in doubleValue().
+   */
+  public static final int NOT_A_NUMBER = 0;
+  public static final int INTEGER = 1;
+  public static final int DECIMAL = 2;
+
+  /**
+   * The most significant digits that a long holds whatever they are, and
+   * that a double holds exactly.
+   */
+  private static final int MAX_LONG_DIGITS = 18;
+  private static final int MAX_EXACT_DIGITS = 15;
+
+  /**
+   * The powers of ten that a double holds exactly.
+   */
+  private static final double[] EXACT_POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /**
+   * Chars that end an unquoted value, in addition to anything below ' '.
+   */
+  private static final boolean[] UNQUOTED_DELIMITERS = new boolean[128];
+
+  static {
+    for (char c : ",:]}/\\\"[{;=#".toCharArray()) {
+      UNQUOTED_DELIMITERS[c] = true;
+    }
+  }
+
+  private final Reader reader;
+  private char[] buffer;
+  private int position;
+  private int limit;
+
+  /**
+   * The index in the source of buffer[0].
+   */
+  private long bufferStart;
+
+  /**
+   * The position in the buffer that skipTo may need to return to, or -1.
+   * Refills keep everything from here on in the buffer.
+   */
+  private int mark = -1;
+
   private boolean eof;
-  private long    index;
-  private long    line;
-  private char    previous;
-  private Reader  reader;
+  private boolean exhausted;
+
+  /**
+   * True if the last call to next() went past the end of the source.
+   */
+  private boolean pastEnd;
   private boolean usePrevious;
 
+  /**
+   * The character, line and previous char as of buffer[0], as the original
+   * char-at-a-time tokener would have counted them.
+   */
+  private long character;
+  private long line;
+  private char previous;
+
+  private long longValue;
+  private double doubleValue;
+
+  /**
+   * Where strings read straight from the buffer are looked up, or null.
+   */
+  private SymbolTable symbols;
+
 
   /**
    * Construct a JSONTokener from a Reader.
@@ -51,13 +139,8 @@ public class JSONTokener {
    * @param reader     A reader.
    */
   public JSONTokener(Reader reader) {
-    this.reader = reader.markSupported()
-        ? reader
-        : new BufferedReader(reader);
-    this.eof = false;
-    this.usePrevious = false;
-    this.previous = 0;
-    this.index = 0;
+    this.reader = reader;
+    this.buffer = new char[BUFFER_SIZE];
     this.character = 1;
     this.line = 1;
   }
@@ -77,7 +160,24 @@ public class JSONTokener {
    * @param s     A source string.
    */
   public JSONTokener(String s) {
-    this(new StringReader(s));
+    this.reader = null;
+    this.buffer = s.toCharArray();
+    this.limit = this.buffer.length;
+    this.exhausted = true;
+    this.character = 1;
+    this.line = 1;
+  }
+
+
+  /**
+   * Look up strings in the given table as they are read, so that repeated
+   * keys and short values come back as the same String instance.
+   *
+   * @param symbols A table, which may be shared with other tokeners, or
+   *                null to make every String afresh.
+   */
+  public void setSymbolTable(SymbolTable symbols) {
+    this.symbols = symbols;
   }
 
 
@@ -87,11 +187,14 @@ public class JSONTokener {
    * the next number or identifier.
    */
   public void back() throws JSONException {
-    if (this.usePrevious || this.index <= 0) {
+    if (this.usePrevious || this.index() <= 0) {
       throw new JSONException("Stepping back two steps is not supported");
     }
-    this.index -= 1;
-    this.character -= 1;
+    if (this.pastEnd) {
+      this.pastEnd = false;
+    } else {
+      this.position -= 1;
+    }
     this.usePrevious = true;
     this.eof = false;
   }
@@ -142,34 +245,17 @@ public class JSONTokener {
    * @return The next character, or 0 if past the end of the source string.
    */
   public char next() throws JSONException {
-    int c;
-    if (this.usePrevious) {
-      this.usePrevious = false;
-      c = this.previous;
-    } else {
-      try {
-        c = this.reader.read();
-      } catch (IOException exception) {
-        throw new JSONException(exception);
-      }
-
-      if (c <= 0) { // End of stream
+    this.usePrevious = false;
+    if (this.position < this.limit || this.fill()) {
+      char c = this.buffer[this.position++];
+      if (c == 0) {
         this.eof = true;
-        c = 0;
       }
+      return c;
     }
-    this.index += 1;
-    if (this.previous == '\r') {
-      this.line += 1;
-      this.character = c == '\n' ? 0 : 1;
-    } else if (c == '\n') {
-      this.line += 1;
-      this.character = 0;
-    } else {
-      this.character += 1;
-    }
-    this.previous = (char) c;
-    return this.previous;
+    this.eof = true;
+    this.pastEnd = true;
+    return 0;
   }
 
 
@@ -225,6 +311,17 @@ public class JSONTokener {
    */
   public char nextClean() throws JSONException {
     for (;;) {
+      while (this.position < this.limit) {
+        char c = this.buffer[this.position];
+        if (c == 0) {
+          break;
+        }
+        this.position += 1;
+        this.usePrevious = false;
+        if (c > ' ') {
+          return c;
+        }
+      }
       char c = this.next();
       if (c == 0 || c > ' ') {
         return c;
@@ -233,6 +330,39 @@ public class JSONTokener {
   }
 
 
+  /**
+   * Read the next value if it is a quoted string that the given lookup has
+   * a value for, looking up the chars where they lie in the buffer. If it
+   * is anything else, or a string with escapes in it, nothing is read.
+   * @param lookup What to look the string up in.
+   * @return The value found, or null if nothing was read.
+   */
+  public <T> T nextKnownString(CharLookup<T> lookup) throws JSONException {
+    char quote = this.nextClean();
+    if (quote == '"' || quote == '\'') {
+      for (int end = this.position; end < this.limit; end += 1) {
+        char c = this.buffer[end];
+        if (c == quote) {
+          T result = lookup.lookup(this.buffer, this.position,
+              end - this.position);
+          if (result != null) {
+            this.position = end + 1;
+            return result;
+          }
+          break;
+        }
+        if (c == '\\' || c == '\n' || c == '\r' || c == 0) {
+          break;
+        }
+      }
+    }
+    if (quote != 0) {
+      this.back();
+    }
+    return null;
+  }
+
+
   /**
    * Return the characters up to the next close quote character.
    * Backslash processing is done. The formal JSON format does not
@@ -246,8 +376,36 @@ public class JSONTokener {
    */
   public String nextString(char quote) throws JSONException {
     char c;
-    StringBuffer sb = new StringBuffer();
+    StringBuilder sb = null;
     for (;;) {
+      // Copy the run of plain chars up to the next one that needs looking at.
+      int start = this.position;
+      while (this.position < this.limit) {
+        c = this.buffer[this.position];
+        if (c == quote || c == '\\' || c == '\n' || c == '\r' || c == 0) {
+          break;
+        }
+        this.position += 1;
+      }
+      if (this.position > start) {
+        this.usePrevious = false;
+        if (sb == null && this.position < this.limit
+            && this.buffer[this.position] == quote) {
+          this.position += 1;
+          if (this.symbols != null) {
+            return this.symbols.lookup(this.buffer, start,
+                this.position - 1 - start);
+          }
+          return new String(this.buffer, start, this.position - 1 - start);
+        }
+        if (sb == null) {
+          sb = new StringBuilder(this.position - start + 16);
+        }
+        sb.append(this.buffer, start, this.position - start);
+      } else if (sb == null) {
+        sb = new StringBuilder();
+      }
+
       c = this.next();
       switch (c) {
         case 0:
@@ -302,7 +460,7 @@ public class JSONTokener {
    * @return   A string.
    */
   public String nextTo(char delimiter) throws JSONException {
-    StringBuffer sb = new StringBuffer();
+    StringBuilder sb = new StringBuilder();
     for (;;) {
       char c = this.next();
       if (c == delimiter || c == 0 || c == '\n' || c == '\r') {
@@ -324,7 +482,7 @@ public class JSONTokener {
    */
   public String nextTo(String delimiters) throws JSONException {
     char c;
-    StringBuffer sb = new StringBuffer();
+    StringBuilder sb = new StringBuilder();
     for (;;) {
       c = this.next();
       if (delimiters.indexOf(c) >= 0 || c == 0 ||
@@ -371,20 +529,220 @@ public class JSONTokener {
          * formatting character.
          */
 
-    StringBuffer sb = new StringBuffer();
-    while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
-      sb.append(c);
-      c = this.next();
+    if (c == '-' || (c >= '0' && c <= '9')) {
+      this.back();
+      switch (this.nextNumber()) {
+        case INTEGER:
+          if (this.longValue == (int) this.longValue) {
+            return Integer.valueOf((int) this.longValue);
+          }
+          return Long.valueOf(this.longValue);
+        case DECIMAL:
+          return Double.valueOf(this.doubleValue);
+        default:
+          c = this.next();
+      }
+    }
+
+    if (isUnquotedChar(c)) {
+      int start = this.position - 1;
+      while (this.position < this.limit
+          && isUnquotedChar(this.buffer[this.position])) {
+        this.position += 1;
+      }
+      if (this.position < this.limit) {
+        // The delimiter is in the buffer, so the value can be taken as-is
+        // and the delimiter left for the next call.
+        string = new String(this.buffer, start, this.position - start).trim();
+      } else {
+        StringBuilder sb = new StringBuilder();
+        sb.append(this.buffer, start, this.position - start);
+        c = this.next();
+        while (isUnquotedChar(c)) {
+          sb.append(c);
+          c = this.next();
+        }
+        this.back();
+        string = sb.toString().trim();
+      }
+    } else {
+      this.back();
+      string = "";
     }
-    this.back();
 
-    string = sb.toString().trim();
     if ("".equals(string)) {
       throw this.syntaxError("Missing value");
     }
     return JSONObject.stringToValue(string);
   }
 
+  private static boolean isUnquotedChar(char c) {
+    return c >= ' ' && (c >= 128 || !UNQUOTED_DELIMITERS[c]);
+  }
+
+
+  /**
+   * Read the next value if it is a number in plain JSON form, parsing it
+   * straight from the source without making a String of it or boxing it.
+   * Integers that fit in a long are read into longValue(); numbers with a
+   * fraction or exponent are read into doubleValue(), exactly as
+   * Double.valueOf would read them. Anything else, including numbers that
+   * stringToValue would not make a Long or Double of, is left for
+   * nextValue() to read.
+   * @return INTEGER, DECIMAL or NOT_A_NUMBER.
+   */
+  public int nextNumber() throws JSONException {
+    char c = this.nextClean();
+    if (c != '-' && (c < '0' || c > '9')) {
+      if (c != 0) {
+        this.back();
+      }
+      return NOT_A_NUMBER;
+    }
+    this.mark = this.position - 1;
+    try {
+      int result = this.scanNumber(c);
+      if (result == NOT_A_NUMBER) {
+        this.position = this.mark;
+        this.usePrevious = true;
+      }
+      return result;
+    } finally {
+      this.mark = -1;
+    }
+  }
+
+  public long longValue() {
+    return this.longValue;
+  }
+
+  public double doubleValue() {
+    return this.doubleValue;
+  }
+
+  private int scanNumber(char first) throws JSONException {
+    boolean negative = first == '-';
+    char c = first;
+    if (negative) {
+      c = this.peek();
+      if (c < '0' || c > '9') {
+        return NOT_A_NUMBER;
+      }
+      this.position += 1;
+    }
+
+    // The significant digits, as many as fit, and the power of ten that
+    // they are to be scaled by.
+    long mantissa = c - '0';
+    int digits = mantissa == 0 ? 0 : 1;
+    int exponent = 0;
+    boolean exact = true;
+    boolean leadingZero = c == '0';
+    for (c = this.peek(); c >= '0' && c <= '9'; c = this.peek()) {
+      if (leadingZero) {
+        return NOT_A_NUMBER;
+      }
+      if (digits < MAX_LONG_DIGITS) {
+        mantissa = mantissa * 10 + (c - '0');
+        digits += 1;
+      } else {
+        exponent += 1;
+        exact = false;
+      }
+      this.position += 1;
+    }
+
+    boolean decimal = false;
+    if (c == '.') {
+      decimal = true;
+      this.position += 1;
+      c = this.peek();
+      if (c < '0' || c > '9') {
+        return NOT_A_NUMBER;
+      }
+      for (; c >= '0' && c <= '9'; c = this.peek()) {
+        if (digits < MAX_LONG_DIGITS) {
+          mantissa = mantissa * 10 + (c - '0');
+          exponent -= 1;
+          if (mantissa != 0) {
+            digits += 1;
+          }
+        } else {
+          exact = false;
+        }
+        this.position += 1;
+      }
+    }
+    if (c == 'e' || c == 'E') {
+      decimal = true;
+      this.position += 1;
+      c = this.peek();
+      boolean negativeExponent = c == '-';
+      if (c == '-' || c == '+') {
+        this.position += 1;
+        c = this.peek();
+      }
+      if (c < '0' || c > '9') {
+        return NOT_A_NUMBER;
+      }
+      int written = 0;
+      for (; c >= '0' && c <= '9'; c = this.peek()) {
+        if (written < 100000) {
+          written = written * 10 + (c - '0');
+        }
+        this.position += 1;
+      }
+      exponent += negativeExponent ? -written : written;
+    }
+    if (isUnquotedChar(c)) {
+      return NOT_A_NUMBER;
+    }
+
+    if (!decimal) {
+      if (!exact || (negative && mantissa == 0)) {
+        // Too long for a long, or "-0": stringToValue leaves these as strings.
+        return NOT_A_NUMBER;
+      }
+      this.longValue = negative ? -mantissa : mantissa;
+      return INTEGER;
+    }
+
+    double value;
+    if (mantissa == 0) {
+      this.doubleValue = negative ? -0d : 0d;
+      return DECIMAL;
+    }
+    if (exact && digits <= MAX_EXACT_DIGITS
+        && exponent >= -22 && exponent <= 22) {
+      // Both operands are exact, so the one rounding gives the nearest double.
+      value = exponent >= 0
+          ? mantissa * EXACT_POWERS_OF_TEN[exponent]
+          : mantissa / EXACT_POWERS_OF_TEN[-exponent];
+      this.doubleValue = negative ? -value : value;
+      return DECIMAL;
+    }
+    try {
+      value = new BigDecimal(this.buffer, this.mark, this.position - this.mark)
+          .doubleValue();
+    } catch (NumberFormatException e) {
+      return NOT_A_NUMBER;
+    }
+    if (Double.isInfinite(value)) {
+      return NOT_A_NUMBER;
+    }
+    this.doubleValue = value;
+    return DECIMAL;
+  }
+
+  /**
+   * The next char, without consuming it, or 0 at the end of the source.
+   */
+  private char peek() throws JSONException {
+    return this.position < this.limit || this.fill()
+        ? this.buffer[this.position]
+        : 0;
+  }
+
 
   /**
    * Skip characters until the next character is the requested character.
@@ -395,23 +753,19 @@ public class JSONTokener {
    */
   public char skipTo(char to) throws JSONException {
     char c;
+    this.mark = this.position;
+    boolean startedPastEnd = this.pastEnd;
     try {
-      long startIndex = this.index;
-      long startCharacter = this.character;
-      long startLine = this.line;
-      this.reader.mark(1000000);
       do {
         c = this.next();
         if (c == 0) {
-          this.reader.reset();
-          this.index = startIndex;
-          this.character = startCharacter;
-          this.line = startLine;
+          this.position = this.mark;
+          this.pastEnd = startedPastEnd;
           return c;
         }
       } while (c != to);
-    } catch (IOException exc) {
-      throw new JSONException(exc);
+    } finally {
+      this.mark = -1;
     }
 
     this.back();
@@ -419,6 +773,17 @@ public class JSONTokener {
   }
 
 
+  /**
+   * Get up to the last maxChars chars read, for showing where an error
+   * happened without keeping the whole source. Fewer are returned if the
+   * window has moved on past them.
+   */
+  public String recentInput(int maxChars) {
+    int start = Math.max(0, this.position - maxChars);
+    return new String(this.buffer, start, this.position - start);
+  }
+
+
   /**
    * Make a JSONException to signal a syntax error.
    *
@@ -436,7 +801,85 @@ public class JSONTokener {
    * @return " at {index} [character {character} line {line}]"
    */
   public String toString() {
-    return " at " + this.index + " [character " + this.character + " line " +
-        this.line + "]";
+    long savedCharacter = this.character;
+    long savedLine = this.line;
+    char savedPrevious = this.previous;
+    this.count(0, this.position);
+    if (this.pastEnd) {
+      this.count((char) 0);
+    }
+    String result = " at " + this.index() + " [character " + this.character
+        + " line " + this.line + "]";
+    this.character = savedCharacter;
+    this.line = savedLine;
+    this.previous = savedPrevious;
+    return result;
+  }
+
+  private long index() {
+    return this.bufferStart + this.position + (this.pastEnd ? 1 : 0);
+  }
+
+  /**
+   * Refill the buffer from the reader, keeping the last char read so that
+   * back() still works, and everything from the mark if there is one.
+   *
+   * @return true if there is at least one more char to read.
+   */
+  private boolean fill() throws JSONException {
+    if (this.exhausted) {
+      return false;
+    }
+    int keep = this.mark >= 0 ? this.mark : Math.max(this.position - 1, 0);
+    if (keep > 0) {
+      this.count(0, keep);
+      System.arraycopy(this.buffer, keep, this.buffer, 0, this.limit - keep);
+      this.bufferStart += keep;
+      this.position -= keep;
+      this.limit -= keep;
+      if (this.mark >= 0) {
+        this.mark -= keep;
+      }
+    }
+    if (this.limit == this.buffer.length) {
+      this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+    }
+    try {
+      int read;
+      do {
+        read = this.reader.read(this.buffer, this.limit, this.buffer.length - this.limit);
+      } while (read == 0);
+      if (read < 0) {
+        this.exhausted = true;
+        return false;
+      }
+      this.limit += read;
+      return true;
+    } catch (IOException exception) {
+      throw new JSONException(exception);
+    }
+  }
+
+  /**
+   * Advance the character and line counts over buffer[from, to), exactly as
+   * the original char-at-a-time tokener counted them as it read.
+   */
+  private void count(int from, int to) {
+    for (int i = from; i < to; i += 1) {
+      this.count(this.buffer[i]);
+    }
+  }
+
+  private void count(char c) {
+    if (this.previous == '\r') {
+      this.line += 1;
+      this.character = c == '\n' ? 0 : 1;
+    } else if (c == '\n') {
+      this.line += 1;
+      this.character = 0;
+    } else {
+      this.character += 1;
+    }
+    this.previous = c;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package com.moozvine.detox.repackaged.org.json;
+
+/**
+ * A fixed-size cache of short Strings, so that a JSONTokener can hand out
+ * one canonical String for each key, type name or enum name it reads again
+ * and again, rather than a new copy each time.
+ * <p>
+ * Each String has exactly one slot it may live in, chosen by its hash, and
+ * a newer String simply replaces whatever was in its slot; so the table
+ * never grows, and a few hot symbols that share a slot just miss more
+ * often. Slots are read and written without locking: a String is
+ * immutable, so a tokener on another thread either sees a complete entry
+ * or an older one, and either way makes a correct String. One table can
+ * therefore be shared by any number of tokeners at once.
+ */
+public final class SymbolTable {
+  private final String[] entries;
+  private final int mask;
+  private final int maxLength;
+
+  /**
+   * @param capacity  The number of slots, rounded up to a power of two.
+   * @param maxLength The longest String worth looking up; longer ones are
+   *                  always made afresh.
+   */
+  public SymbolTable(int capacity, int maxLength) {
+    int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+    this.entries = new String[size];
+    this.mask = size - 1;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Return a String of the given chars, the same instance as last time if
+   * it is still in the table.
+   */
+  public String lookup(char[] chars, int offset, int length) {
+    if (length > this.maxLength) {
+      return new String(chars, offset, length);
+    }
+    int hash = 0;
+    for (int i = offset; i < offset + length; i += 1) {
+      hash = 31 * hash + chars[i];
+    }
+    int slot = (hash ^ (hash >>> 16)) & this.mask;
+    String entry = this.entries[slot];
+    if (entry != null && matches(entry, chars, offset, length)) {
+      return entry;
+    }
+    entry = new String(chars, offset, length);
+    this.entries[slot] = entry;
+    return entry;
+  }
+
+  private static boolean matches(String entry, char[] chars, int offset,
+      int length) {
+    if (entry.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i += 1) {
+      if (entry.charAt(i) != chars[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
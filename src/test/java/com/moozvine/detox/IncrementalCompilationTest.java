@@ -0,0 +1,129 @@
+package com.moozvine.detox;
+
+import com.moozvine.detox.processor.GenerateDTOProcessor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the annotation processor over one interface at a time into the same output, as an incremental build would.
+ */
+@RunWith(JUnit4.class)
+public class IncrementalCompilationTest {
+  private Path sources;
+  private Path generated;
+  private Path output;
+
+  @Before
+  public void createDirectories() throws IOException {
+    sources = Files.createTempDirectory("detox-sources");
+    generated = Files.createTempDirectory("detox-generated");
+    output = Files.createTempDirectory("detox-classes");
+  }
+
+  @After
+  public void deleteDirectories() throws IOException {
+    for (final Path directory : Arrays.asList(sources, generated, output)) {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void recompilingOneInterfaceShouldKeepTheIndexedTypesOfTheOthers() throws Exception {
+    compile(writeInterface("First", "first"));
+    compile(writeInterface("Second", "second"));
+
+    final List<String> typeIds = Files.readAllLines(
+        output.resolve("META-INF/detox/type-ids.properties"), StandardCharsets.UTF_8);
+    assertEquals(Arrays.asList("first=incremental.First", "second=incremental.Second"), typeIds);
+    assertEquals(2, Files.readAllLines(
+        output.resolve("META-INF/services/" + TypeRegistry.class.getName()), StandardCharsets.UTF_8).size());
+
+    try (final URLClassLoader loader = new URLClassLoader(
+        new URL[] {output.toUri().toURL()}, getClass().getClassLoader())) {
+      final AbstractSerializationService service = new AbstractSerializationService() {
+      };
+      service.setClassLoader(loader);
+      for (final String name : Arrays.asList("First", "Second")) {
+        final Class<?> generatableInterface = loader.loadClass("incremental." + name);
+        assertTrue(service.getRegisteredTypes().contains(generatableInterface));
+        assertTrue(generatableInterface.isInstance(service.deserialize(
+            "{\"serializedType\": \"" + name.toLowerCase() + "\", \"name\": \"" + name + "\"}")));
+      }
+    }
+  }
+
+  private Path writeInterface(
+      final String name,
+      final String typeId) throws IOException {
+    final Path source = sources.resolve(name + ".java");
+    Files.write(source, Arrays.asList(
+        "package incremental;",
+        "",
+        "import com.moozvine.detox.GenerateDTO;",
+        "import com.moozvine.detox.Serializable;",
+        "",
+        "@GenerateDTO(typeId = \"" + typeId + "\")",
+        "public interface " + name + " extends Serializable {",
+        "  String getName();",
+        "}"), StandardCharsets.UTF_8);
+    return source;
+  }
+
+  private void compile(final Path source) throws IOException {
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    try (final StandardJavaFileManager files = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+      final JavaCompiler.CompilationTask task = compiler.getTask(null, files, null,
+          Arrays.asList(
+              "-classpath", System.getProperty("java.class.path") + File.pathSeparator + output,
+              "-d", output.toString(),
+              "-s", generated.toString()),
+          null,
+          files.getJavaFileObjects(source.toFile()));
+      task.setProcessors(Collections.singletonList(new GenerateDTOProcessor()));
+      assertTrue("Failed to compile " + source, task.call());
+    }
+  }
+
+  private static void delete(final Path directory) throws IOException {
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(
+          final Path file,
+          final BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(
+          final Path dir,
+          final IOException e) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
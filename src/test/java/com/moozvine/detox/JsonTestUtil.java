@@ -100,7 +100,7 @@ public class JsonTestUtil {
     }
     for (int i = 0; i < subset.length(); ++i) {
       final Object value = subset.get(i);
-      if (value.getClass().equals(superset.get(i).getClass())) {
+      if (!value.getClass().equals(superset.get(i).getClass())) {
         throw new AssertionError(String.format(
             "Value of index %s of JSONArray%s has unexpected type. Expected %s but was %s on JSONObject:\n%s",
             i,
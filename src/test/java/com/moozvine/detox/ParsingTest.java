@@ -0,0 +1,521 @@
+package com.moozvine.detox;
+
+import com.google.common.collect.ImmutableList;
+import com.moozvine.detox.repackaged.org.json.JSONArray;
+import com.moozvine.detox.repackaged.org.json.JSONException;
+import com.moozvine.detox.repackaged.org.json.JSONObject;
+import com.moozvine.detox.repackaged.org.json.JSONTokener;
+import com.moozvine.detox.repackaged.org.json.SymbolTable;
+import com.moozvine.detox.testtypes.AnEnum;
+import com.moozvine.detox.testtypes.CollaboratorSerializable;
+import com.moozvine.detox.testtypes.CollaboratorSubclass1Impl;
+import com.moozvine.detox.testtypes.CollaboratorSubclass2Impl;
+import com.moozvine.detox.testtypes.SubclassSerializable;
+import com.moozvine.detox.testtypes.SubclassSerializableImpl;
+import com.moozvine.detox.testtypes.Types;
+import com.moozvine.detox.testtypes.Types$SerializableWithDoubleMemberBuilder;
+import com.moozvine.detox.testtypes.Types$SerializableWithGeneratedNamesBuilder;
+import com.moozvine.detox.testtypes.Types$SerializableWithSerializableMemberListBuilder;
+import com.moozvine.detox.testtypes.Types$SerializableWithStringMemberBuilder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class ParsingTest {
+  private final SerializationService service = new AbstractSerializationService() {
+  };
+
+  private static String largeArray() {
+    final StringBuilder result = new StringBuilder("[");
+    for (int i = 0; i < 2000; ++i) {
+      if (i > 0) {
+        result.append(",\n");
+      }
+      result.append("{\"name\": \"value \\\"number\\\" ").append(i).append("\", \"n\": ").append(i).append("}");
+    }
+    return result.append("]").toString();
+  }
+
+  @Test
+  public void readerInputShouldParseTheSameAsAString() throws Exception {
+    final String source = largeArray();
+    // A reader that hands over a few chars at a time, so that tokens straddle every possible refill boundary.
+    final FilterReader trickle = new FilterReader(new StringReader(source)) {
+      @Override public int read(final char[] buffer, final int offset, final int length) throws IOException {
+        return super.read(buffer, offset, Math.min(length, 3));
+      }
+    };
+
+    final JSONArray fromString = new JSONArray(source);
+    final JSONArray fromReader = new JSONArray(new JSONTokener(trickle));
+
+    assertEquals(fromString.toString(), fromReader.toString());
+    assertEquals("value \"number\" 1999", fromReader.getJSONObject(1999).getString("name"));
+  }
+
+  @Test
+  public void syntaxErrorsShouldReportWhereTheyHappened() throws Exception {
+    try {
+      new JSONObject("{\"a\": 1,\n \"b\" 2}");
+      fail();
+    } catch (final JSONException e) {
+      assertEquals("Expected a ':' after a key at 15 [character 6 line 2]", e.getMessage());
+    }
+  }
+
+  @Test
+  public void streamsShouldDeserializeTheSameAsStrings() throws Exception {
+    final ImmutableList.Builder<Types.SerializableWithStringMember> members = ImmutableList.builder();
+    for (int i = 0; i < 1000; ++i) {
+      members.add(Types$SerializableWithStringMemberBuilder.newBuilder().withAString("member " + i).build());
+    }
+    final String serialized = service.serialize(
+        Types$SerializableWithSerializableMemberListBuilder.newBuilder().withMembers(members.build()).build());
+
+    final Types.SerializableWithSerializableMemberList deserialized = service.deserialize(
+        new ByteArrayInputStream(serialized.getBytes("UTF-8")), Types.SerializableWithSerializableMemberList.class);
+
+    assertEquals(serialized, service.serialize(deserialized));
+  }
+
+  @Test
+  public void streamParseErrorsShouldOnlyQuoteRecentInput() throws Exception {
+    final StringBuilder padding = new StringBuilder();
+    for (int i = 0; i < 10000; ++i) {
+      padding.append('x');
+    }
+    final String serialized = service.serialize(
+        Types$SerializableWithStringMemberBuilder.newBuilder().withAString(padding.toString()).build());
+    final String malformed = serialized.replace(padding + "\"", padding + "\" oops");
+    final int errorPosition = malformed.indexOf(" oops") + 2;
+    try {
+      service.deserialize(new StringReader(malformed), Types.SerializableWithStringMember.class);
+      fail();
+    } catch (final DeserializationException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("Failed to parse JSON at " + errorPosition
+          + " [character " + (errorPosition + 1) + " line 1]"));
+      assertTrue(e.getMessage(), e.getMessage().endsWith("xxx\" o"));
+      assertTrue(e.getMessage(), e.getMessage().length() < 300);
+    }
+  }
+
+  @Test
+  public void boundDTOsShouldMatchThoseBuiltFromTheTree() throws Exception {
+    final List<CollaboratorSerializable> childList = new ArrayList<>();
+    childList.add(new CollaboratorSubclass1Impl().setAChildMember("list member"));
+    childList.add(new CollaboratorSubclass2Impl());
+    final String serialized = service.serialize(new SubclassSerializableImpl()
+        .setABoolean(true)
+        .setAChar('x')
+        .setADouble(1234.5d)
+        .setAFloat(1.5f)
+        .setALong(1378L)
+        .setAString("some \"quoted\" string")
+        .setACollaborator(new CollaboratorSubclass1Impl().setAChildMember("collaborator member"))
+        .setChildList(childList), SubclassSerializable.class);
+
+    final SubclassSerializable bound = service.deserialize(serialized, SubclassSerializable.class);
+    final SubclassSerializable fromTree = service.deserialize(new JSONObject(serialized), SubclassSerializable.class);
+
+    assertEquals(service.serialize(fromTree), service.serialize(bound));
+    assertEquals(serialized, service.serialize(bound));
+
+    // The tree form can't hold a null Serializable list element, but binding can.
+    childList.add(1, null);
+    final String withNullElement = service.serialize(
+        new SubclassSerializableImpl().setChildList(childList), SubclassSerializable.class);
+    assertEquals(withNullElement,
+        service.serialize(service.deserialize(withNullElement, SubclassSerializable.class)));
+  }
+
+  @Test
+  public void bindingShouldSkipUnknownMembersAndAcceptAnyOrder() throws Exception {
+    final String serialized = service.serialize(
+        Types$SerializableWithStringMemberBuilder.newBuilder().withAString("value").build());
+    final JSONObject json = new JSONObject(serialized);
+    // serializedType last, so the object can only be read as a tree.
+    final String reordered = "{\"unknown\": {\"a\": [1, 2, {}]}, \"aString\": \"value\", \"serializedType\": "
+        + JSONObject.quote(json.getString("serializedType")) + "}";
+    final String withUnknown = serialized.replace("{", "{\"unknown\": [[], {\"b\": null}], ");
+
+    assertEquals(serialized, service.serialize(service.deserialize(reordered, Types.SerializableWithStringMember.class)));
+    assertEquals(serialized,
+        service.serialize(service.deserialize(withUnknown, Types.SerializableWithStringMember.class)));
+  }
+
+  @Test
+  public void bindingShouldFailOnMissingPrimitives() throws Exception {
+    final String serialized = service.serialize(
+        Types$SerializableWithDoubleMemberBuilder.newBuilder().withADouble(1d).build());
+    try {
+      service.deserialize(serialized.replace("\"aDouble\":1", "\"other\":1"), Types.SerializableWithDoubleMember.class);
+      fail();
+    } catch (final DeserializationException e) {
+      assertEquals("JSONObject[\"aDouble\"] not found.", e.getCause().getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void bindingShouldRejectRepeatedNamesAsTheTreeDoes() throws Exception {
+    final String serialized = service.serialize(Types$SerializableWithGeneratedNamesBuilder.newBuilder()
+        .withIn("in")
+        .withMemberName(ImmutableList.of("a", "b"))
+        .build());
+    assertEquals(serialized,
+        service.serialize(service.deserialize(serialized, Types.SerializableWithGeneratedNames.class)));
+
+    final String[] repeated = {
+        serialized.replace("\"in\":", "\"in\":\"again\",\"in\":"),
+        serialized.replace("\"memberName\":", "\"memberName\":[\"c\"],\"memberName\":"),
+        serialized.replace("\"in\":", "\"unknown\":1,\"unknown\":2,\"in\":"),
+        serialized.replace("\"in\":", "\"serializedType\":\"again\",\"in\":"),
+    };
+    for (final String input : repeated) {
+      try {
+        service.deserialize(input, Types.SerializableWithGeneratedNames.class);
+        fail("Accepted " + input);
+      } catch (final DeserializationException e) {
+        assertTrue(e.getCause().getCause().getMessage().startsWith("Duplicate key"));
+      }
+      try {
+        new JSONObject(input);
+        fail("The tree accepted " + input);
+      } catch (final JSONException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void numbersShouldParseAsStringToValueWould() throws Exception {
+    final String[] tokens = {
+        "0", "-7", "2147483647", "2147483648", "-9223372036854775808", "9223372036854775808", "-0", "007",
+        "0.1", "-0.0", "1234.5", "1e3", "2.5E-3", "123456789012345678901234.5", "4.9e-324", "1e400", "1.5f"};
+    for (final String token : tokens) {
+      final Object expected = JSONObject.stringToValue(token);
+      final Object actual = new JSONArray("[" + token + "]").get(0);
+      assertEquals(token, expected.getClass(), actual.getClass());
+      assertEquals(token, expected, actual);
+
+      final double expectedDouble
+          = expected instanceof Number ? ((Number) expected).doubleValue() : Double.parseDouble(token);
+      assertEquals(token, expectedDouble, new JsonParser(token).nextDouble(), 0d);
+    }
+    assertEquals(-9223372036854775808L, new JsonParser("-9223372036854775808").nextLong());
+    assertEquals(-7, new JsonParser("-7.9").nextInt());
+  }
+
+  @Test
+  public void repeatedShortStringsShouldBeReadAsOneInstance() throws Exception {
+    final String serialized = service.serialize(
+        Types$SerializableWithStringMemberBuilder.newBuilder().withAString("shared").build());
+    final Types.SerializableWithStringMember first
+        = service.deserialize(serialized, Types.SerializableWithStringMember.class);
+    final Types.SerializableWithStringMember second
+        = service.deserialize(new StringReader(serialized), Types.SerializableWithStringMember.class);
+    assertSame(first.getAString(), second.getAString());
+
+    final SymbolTable symbols = new SymbolTable(16, 8);
+    final JSONTokener tokener = new JSONTokener("[\"short\", \"short\", \"longer than eight\", \"longer than eight\"]");
+    tokener.setSymbolTable(symbols);
+    final JSONArray array = new JSONArray(tokener);
+    assertSame(array.get(0), array.get(1));
+    assertEquals(array.get(2), array.get(3));
+    assertNotSame(array.get(2), array.get(3));
+  }
+
+  @Test
+  public void enumsShouldBeReadAsValueOfWouldReadThem() throws Exception {
+    final EnumLookup<AnEnum> constants = new EnumLookup<>(AnEnum.class);
+    final JsonParser in = new JsonParser("[\"TWO\", \"TH\\u0052EE\", ONE, \"FOUR\"]");
+    in.beginArray();
+    in.firstElement();
+    assertSame(AnEnum.TWO, in.nextEnum(constants));
+    in.nextElement();
+    assertSame(AnEnum.THREE, in.nextEnum(constants));
+    in.nextElement();
+    assertSame(AnEnum.ONE, in.nextEnum(constants));
+    in.nextElement();
+    try {
+      in.nextEnum(constants);
+      fail();
+    } catch (final IllegalArgumentException e) {
+      assertEquals("No enum constant " + AnEnum.class.getCanonicalName() + ".FOUR", e.getMessage());
+    }
+    assertSame(AnEnum.ONE, constants.valueOf("ONE"));
+  }
+
+  @Test
+  public void readAllShouldReadNewlineDelimitedAndConcatenatedDocuments() throws Exception {
+    final StringBuilder input = new StringBuilder();
+    for (int i = 0; i < 1000; ++i) {
+      input.append(service.serialize(
+          Types$SerializableWithStringMemberBuilder.newBuilder().withAString("event " + i).build()));
+      input.append(i % 2 == 0 ? "\n" : "");
+    }
+    final boolean[] closed = {false};
+    final StringReader reader = new StringReader(input.toString()) {
+      @Override public void close() {
+        closed[0] = true;
+      }
+    };
+
+    final DocumentIterator<Types.SerializableWithStringMember> documents
+        = service.readAll(reader, Types.SerializableWithStringMember.class);
+    int count = 0;
+    while (documents.hasNext()) {
+      assertEquals("event " + count, documents.next().getAString());
+      ++count;
+    }
+    assertEquals(1000, count);
+    assertTrue(closed[0]);
+  }
+
+  @Test
+  public void readAllShouldReportWhichDocumentFailed() throws Exception {
+    final String good = service.serialize(
+        Types$SerializableWithStringMemberBuilder.newBuilder().withAString("good").build());
+    final DocumentIterator<Types.SerializableWithStringMember> documents = service.readAll(
+        new ByteArrayInputStream((good + "\n" + good + "\n{\"oops\"}\n").getBytes("UTF-8")),
+        Types.SerializableWithStringMember.class);
+    documents.next();
+    documents.next();
+    try {
+      documents.next();
+      fail();
+    } catch (final IllegalArgumentException e) {
+      assertTrue(e.getCause() instanceof DeserializationException);
+      assertTrue(e.getMessage(), e.getMessage().startsWith("Failed to parse JSON at "));
+      assertTrue(e.getMessage(), e.getMessage().contains("line 3]"));
+    }
+    documents.close();
+  }
+
+  @Test
+  public void parallelReadAllShouldReadEveryLineOfAFile() throws Exception {
+    final File file = File.createTempFile("ParsingTest", ".ndjson");
+    file.deleteOnExit();
+    final List<Types.SerializableWithStringMember> written = new ArrayList<>();
+    for (int i = 0; i < 5000; ++i) {
+      written.add(Types$SerializableWithStringMemberBuilder.newBuilder()
+          .withAString("caf\u00e9 \u20ac \ud83d\ude00 " + i)
+          .build());
+    }
+    try (OutputStream out = new FileOutputStream(file)) {
+      service.writeAll(written, Types.SerializableWithStringMember.class, out, SerializationService.Format.NDJSON);
+    }
+    final ForkJoinPool pool = new ForkJoinPool(4);
+
+    final List<String> ordered = new ArrayList<>();
+    service.readAll(file.toPath(), Types.SerializableWithStringMember.class, pool, true,
+        new DocumentHandler<Types.SerializableWithStringMember>() {
+          @Override
+          public void handle(final Types.SerializableWithStringMember document) {
+            ordered.add(document.getAString());
+          }
+        });
+    assertEquals(5000, ordered.size());
+    for (int i = 0; i < 5000; ++i) {
+      assertEquals(written.get(i).getAString(), ordered.get(i));
+    }
+
+    final Set<String> unordered = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    service.readAll(file.toPath(), Types.SerializableWithStringMember.class, pool, false,
+        new DocumentHandler<Types.SerializableWithStringMember>() {
+          @Override
+          public void handle(final Types.SerializableWithStringMember document) {
+            unordered.add(document.getAString());
+          }
+        });
+    assertEquals(new HashSet<>(ordered), unordered);
+    pool.shutdown();
+  }
+
+  @Test
+  public void parallelReadAllShouldReportWhereAFileFailed() throws Exception {
+    final File file = File.createTempFile("ParsingTest", ".ndjson");
+    file.deleteOnExit();
+    final String good = service.serialize(
+        Types$SerializableWithStringMemberBuilder.newBuilder().withAString("good").build());
+    try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+      out.write(good + "\n" + good + "\n{\"oops\"}\n");
+    }
+    try {
+      service.readAll(file.toPath(), Types.SerializableWithStringMember.class, new ForkJoinPool(1), true,
+          new DocumentHandler<Types.SerializableWithStringMember>() {
+            @Override
+            public void handle(final Types.SerializableWithStringMember document) {
+            }
+          });
+      fail();
+    } catch (final DeserializationException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("In the lines of " + file.toPath() + " from byte "));
+      assertTrue(e.getMessage(), e.getMessage().contains("Failed to parse JSON at "));
+    }
+  }
+
+  @Test
+  public void parallelReadAllShouldNotHandleDocumentsAfterItHasThrown() throws Exception {
+    final File file = File.createTempFile("ParsingTest", ".ndjson");
+    file.deleteOnExit();
+    final String good = service.serialize(
+        Types$SerializableWithStringMemberBuilder.newBuilder().withAString("good").build());
+    try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+      out.write("{\"oops\"}\n");
+      for (int i = 0; i < 20000; ++i) {
+        out.write(good + "\n");
+      }
+    }
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    for (final boolean ordered : new boolean[] {false, true}) {
+      final AtomicInteger handled = new AtomicInteger();
+      try {
+        service.readAll(file.toPath(), Types.SerializableWithStringMember.class, pool, ordered,
+            new DocumentHandler<Types.SerializableWithStringMember>() {
+              @Override
+              public void handle(final Types.SerializableWithStringMember document) {
+                handled.incrementAndGet();
+              }
+            });
+        fail();
+      } catch (final DeserializationException expected) {
+      }
+      final int handledBeforeThrowing = handled.get();
+      assertTrue(pool.awaitQuiescence(10, TimeUnit.SECONDS));
+      assertEquals(handledBeforeThrowing, handled.get());
+    }
+    pool.shutdown();
+  }
+
+  @Test
+  public void pushParserShouldReadDocumentsHoweverTheInputIsSplit() throws Exception {
+    final StringBuilder input = new StringBuilder();
+    final List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 20; ++i) {
+      final String aString = "{\"[caf\u00e9 \\ \ud83d\ude00 " + i + "]}";
+      expected.add(aString);
+      input.append(service.serialize(
+          Types$SerializableWithStringMemberBuilder.newBuilder().withAString(aString).build()));
+      input.append(i % 2 == 0 ? "\n" : " ");
+    }
+    final byte[] bytes = input.toString().getBytes(StandardCharsets.UTF_8);
+
+    for (int chunkSize = 1; chunkSize < 200; chunkSize += 7) {
+      final List<String> read = new ArrayList<>();
+      final PushParser<Types.SerializableWithStringMember> parser = service.newPushParser(
+          Types.SerializableWithStringMember.class,
+          new DocumentHandler<Types.SerializableWithStringMember>() {
+            @Override
+            public void handle(final Types.SerializableWithStringMember document) {
+              read.add(document.getAString());
+            }
+          });
+      for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+        parser.feed(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+      }
+      parser.finish();
+      assertEquals(expected, read);
+    }
+  }
+
+  @Test
+  public void readFailuresWhileBindingShouldReachTheCaller() throws Exception {
+    final ImmutableList.Builder<Types.SerializableWithStringMember> members = ImmutableList.builder();
+    for (int i = 0; i < 100; ++i) {
+      members.add(Types$SerializableWithStringMemberBuilder.newBuilder().withAString("member " + i).build());
+    }
+    final String serialized = service.serialize(
+        Types$SerializableWithSerializableMemberListBuilder.newBuilder().withMembers(members.build()).build());
+    final IOException failure = new IOException("Connection reset");
+
+    try {
+      service.deserialize(failingAfter(serialized, serialized.length() / 2, failure),
+          Types.SerializableWithSerializableMemberList.class);
+      fail();
+    } catch (final IOException e) {
+      assertSame(failure, e);
+    }
+    try {
+      service.readAll(failingAfter(serialized + "\n", serialized.length() / 2, failure),
+          Types.SerializableWithSerializableMemberList.class).next();
+      fail();
+    } catch (final IllegalArgumentException e) {
+      assertSame(failure, e.getCause());
+    }
+  }
+
+  /**
+   * A reader that fails, as a dropped connection would, once it has handed over the given number of chars.
+   */
+  private static Reader failingAfter(
+      final String source,
+      final int chars,
+      final IOException failure) {
+    return new FilterReader(new StringReader(source.substring(0, chars))) {
+      @Override public int read(final char[] buffer, final int offset, final int length) throws IOException {
+        final int read = super.read(buffer, offset, length);
+        if (read < 0) {
+          throw failure;
+        }
+        return read;
+      }
+    };
+  }
+
+  @Test
+  public void pushParserShouldFailOnIncompleteOrMalformedInput() throws Exception {
+    final DocumentHandler<Object> ignore = new DocumentHandler<Object>() {
+      @Override
+      public void handle(final Object document) {
+      }
+    };
+    final PushParser<Object> incomplete = service.newPushParser(Object.class, ignore);
+    incomplete.feed("{\"serializedType\": ".getBytes(StandardCharsets.UTF_8), 0, 18);
+    try {
+      incomplete.finish();
+      fail();
+    } catch (final DeserializationException expected) {
+      assertEquals("The input ended part way through a document", expected.getMessage());
+    }
+
+    final PushParser<Object> malformed = service.newPushParser(Object.class, ignore);
+    try {
+      malformed.feed("  x".getBytes(StandardCharsets.UTF_8), 0, 3);
+      fail();
+    } catch (final DeserializationException expected) {
+      assertTrue(expected.getMessage(), expected.getMessage().endsWith("not 'x'"));
+    }
+    try {
+      malformed.feed(new byte[] {'{'}, 0, 1);
+      fail();
+    } catch (final IllegalStateException expected) {
+    }
+  }
+}
@@ -7,12 +7,16 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.StringWriter;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
 @RunWith(JUnit4.class)
 public class SerializationServiceTest {
@@ -127,4 +131,92 @@ public class SerializationServiceTest {
     assertEquals(123L, (long) deserialized.getFirstOptionalField());
     assertEquals(123.4, (double) deserialized.getSecondOptionalField(), 0.1);
   }
+
+  @Test
+  public void subtypesShouldBeWrittenWithTheirSupertypesSerializer() throws Exception {
+    final String serialized = service.serialize(TypeWithCustomFieldNamesBuilder.newBuilder()
+        .withFirstRequiredField("one")
+        .withSecondRequiredField(new Timestamp(456L))
+        .build());
+    assertEquals("456", new JSONObject(serialized).getString("required_field_2"));
+    assertEquals("789", service.toJson(new Timestamp(789L)));
+  }
+
+  @Test
+  public void serializersRegisteredLaterShouldBeUsed() throws Exception {
+    final RegisteringService registering = new RegisteringService();
+    try {
+      registering.toJson(new StringBuilder("built"));
+      fail();
+    } catch (final SerializationError expected) {
+    }
+
+    registering.register(new StringSerializer<CharSequence>(CharSequence.class) {
+      @Override
+      public CharSequence fromString(final String value) {
+        return value;
+      }
+
+      @Override
+      public String toJson(final CharSequence value) {
+        return value.toString();
+      }
+    });
+    assertEquals("built", registering.toJson(new StringBuilder("built")));
+  }
+
+  @Test
+  public void dtosShouldKeepTheFormsOfCustomMembersTheyWereCopiedWith() throws Exception {
+    final RegisteringService registering = new RegisteringService();
+    registering.register(new CharSequenceSerializer("first:"));
+    final DTO dto = registering.createDTO(Types$SerializableWithGeneratedFieldNamesBuilder.newBuilder()
+        .withService("named service")
+        .withOut(new StringBuilder("out"))
+        .build());
+    registering.register(new CharSequenceSerializer("second:"));
+
+    final StringWriter written = new StringWriter();
+    dto.writeTo(new JsonGenerator(written, 0));
+    final JSONObject json = new JSONObject(written.toString());
+    assertEquals("named service", json.getString("service"));
+    assertEquals("first:out", json.getString("out"));
+    assertEquals("first:out", dto.toJson().getString("out"));
+  }
+
+  @Test
+  public void dtosShouldCopyMembersNamedAfterTheCopyConstructorsParameters() throws Exception {
+    final String serialized = service.serialize(Types$SerializableWithCopyConstructorNamesBuilder.newBuilder()
+        .withContext("context")
+        .withOriginal(Arrays.asList("original"))
+        .build());
+    final Types.SerializableWithCopyConstructorNames deserialized
+        = service.deserialize(serialized, Types.SerializableWithCopyConstructorNames.class);
+    assertEquals("context", deserialized.getContext());
+    assertEquals(Arrays.asList("original"), deserialized.getOriginal());
+  }
+
+  private static final class CharSequenceSerializer extends StringSerializer<CharSequence> {
+    private final String prefix;
+
+    CharSequenceSerializer(final String prefix) {
+      super(CharSequence.class);
+      this.prefix = prefix;
+    }
+
+    @Override
+    public CharSequence fromString(final String value) {
+      return value.substring(prefix.length());
+    }
+
+    @Override
+    public String toJson(final CharSequence value) {
+      return prefix + value;
+    }
+  }
+
+  private static final class RegisteringService extends AbstractSerializationService {
+    void register(final Serializer<?> serializer) {
+      registerSerializer(serializer);
+    }
+  }
 }
@@ -0,0 +1,466 @@
+package com.moozvine.detox;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.moozvine.detox.repackaged.org.json.JSONObject;
+import com.moozvine.detox.testtypes.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import static com.moozvine.detox.JsonTestUtil.assertJsonEquivalence;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class StreamingSerializationTest {
+  private AbstractSerializationService service;
+
+  @Before
+  public void createService() {
+    service = new AbstractSerializationService() {
+    };
+  }
+
+  @Test
+  public void streamedFormShouldMatchTreeForm() throws Exception {
+    final List<CollaboratorSerializable> childList = new ArrayList<>();
+    childList.add(new CollaboratorSubclass1Impl().setAChildMember("list member 1"));
+    childList.add(null);
+    childList.add(new CollaboratorSubclass2Impl());
+
+    final SubclassSerializableImpl original = new SubclassSerializableImpl()
+        .setABoolean(true)
+        .setAChar('x')
+        .setADouble(1234.5d)
+        .setAFloat(1.3f)
+        .setALong(1378L)
+        .setAString("some \"quoted\" string")
+        .setACollaborator(new CollaboratorSubclass1Impl().setAChildMember("collaborator member"))
+        .setChildList(childList)
+        .setASubclassMember(null);
+
+    assertJsonEquivalence(
+        new JSONObject(service.createJSONObject(original).toString()),
+        new JSONObject(service.serialize(original)));
+  }
+
+  @Test
+  public void streamedMapsShouldMatchTreeForm() throws Exception {
+    final Types.SerializableWithStringMapOfSerializables original
+        = Types$SerializableWithStringMapOfSerializablesBuilder.newBuilder()
+        .withStringMap(ImmutableMap.of(
+            "a", Types$SerializableWithStringMemberBuilder.newBuilder().withAString("one").build(),
+            "b", Types$SerializableWithStringMemberBuilder.newBuilder().withAString("two").build()))
+        .build();
+
+    assertJsonEquivalence(
+        new JSONObject(service.createJSONObject(original).toString()),
+        new JSONObject(service.serialize(original)));
+  }
+
+  @Test
+  public void prettyPrintedFormShouldParseToTheSameObject() throws Exception {
+    final Types.SerializableWithSerializableMemberList original
+        = Types$SerializableWithSerializableMemberListBuilder.newBuilder()
+        .withMembers(ImmutableList.of(
+            Types$SerializableWithStringMemberBuilder.newBuilder().withAString("one").build()))
+        .build();
+
+    final String ugly = service.serialize(original);
+    service.setPrettyPrint();
+    final String pretty = service.serialize(original);
+
+    assertEquals(ugly, pretty.replaceAll("\n *", "").replace("\": ", "\":"));
+  }
+
+  @Test
+  public void writeShouldMatchSerialize() throws Exception {
+    final SimpleType original = SimpleTypeBuilder.newBuilder()
+        .withSomeString("caf\u00e9")
+        .withAnInt(2)
+        .build();
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    service.write(original, out);
+
+    assertEquals(service.serialize(original), out.toString("UTF-8"));
+  }
+
+  @Test
+  public void toBytesShouldMatchUtf8EncodedSerialForm() throws Exception {
+    final StringBuilder longString = new StringBuilder();
+    for (int i = 0; i < 3000; ++i) {
+      longString.append("ascii \u00e9\u20ac\ud83d\ude00 ");
+    }
+    final SimpleType original = SimpleTypeBuilder.newBuilder()
+        .withSomeString(longString.toString())
+        .withAnInt(2)
+        .build();
+
+    assertArrayEquals(service.serialize(original).getBytes("UTF-8"), service.toBytes(original));
+  }
+
+  @Test
+  public void buffersShouldHoldTheUtf8EncodedSerialForm() throws Exception {
+    final SimpleType original = SimpleTypeBuilder.newBuilder()
+        .withSomeString("caf\u00e9 \ud83d\ude00")
+        .withAnInt(2)
+        .build();
+    final byte[] expected = service.toBytes(original, SimpleType.class);
+
+    for (final ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(1024), ByteBuffer.allocateDirect(1024)}) {
+      buffer.put((byte) 'x');
+      service.write(original, SimpleType.class, buffer);
+      assertEquals(1 + expected.length, buffer.position());
+      buffer.flip();
+      buffer.get();
+      final byte[] written = new byte[buffer.remaining()];
+      buffer.duplicate().get(written);
+      assertArrayEquals(expected, written);
+      assertEquals(service.serialize(original), service.serialize(service.deserialize(buffer, SimpleType.class)));
+      assertEquals(buffer.limit(), buffer.position());
+    }
+  }
+
+  @Test
+  public void bufferOverflowShouldLeaveThePositionUnchanged() throws Exception {
+    final SimpleType original = SimpleTypeBuilder.newBuilder().withSomeString("too long").withAnInt(2).build();
+    final ByteBuffer buffer = ByteBuffer.allocate(10);
+    buffer.put((byte) 'x');
+    try {
+      service.write(original, SimpleType.class, buffer);
+      fail();
+    } catch (final BufferOverflowException expected) {
+      assertEquals(1, buffer.position());
+    }
+  }
+
+  @Test
+  public void channelsShouldCarryTheUtf8EncodedSerialForm() throws Exception {
+    final StringBuilder longString = new StringBuilder();
+    for (int i = 0; i < 100000; ++i) {
+      longString.append("ascii \u00e9\u20ac\ud83d\ude00 ");
+    }
+    final SimpleType original = SimpleTypeBuilder.newBuilder()
+        .withSomeString(longString.toString())
+        .withAnInt(2)
+        .build();
+    final byte[] expected = service.toBytes(original, SimpleType.class);
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    service.write(original, SimpleType.class, Channels.newChannel(bytes));
+    assertArrayEquals(expected, bytes.toByteArray());
+
+    final File file = File.createTempFile("StreamingSerializationTest", ".json");
+    file.deleteOnExit();
+    try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+      service.write(original, SimpleType.class, channel);
+    }
+    assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+    final SimpleType read = service.deserialize(new FileInputStream(file).getChannel(), SimpleType.class);
+    assertEquals(original.getSomeString(), read.getSomeString());
+  }
+
+  @Test
+  public void nonBlockingChannelsShouldBeRefused() throws Exception {
+    final Pipe pipe = Pipe.open();
+    try {
+      pipe.sink().configureBlocking(false);
+      service.write(SimpleTypeBuilder.newBuilder().withSomeString("full").withAnInt(3).build(), SimpleType.class,
+          pipe.sink());
+      fail();
+    } catch (final IllegalBlockingModeException expected) {
+    } finally {
+      pipe.sink().close();
+      pipe.source().close();
+    }
+  }
+
+  @Test
+  public void utf8WriterShouldReplaceUnpairedSurrogates() throws Exception {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final Utf8Writer writer = new Utf8Writer(out);
+    writer.write("a\ude00b\ud83d");
+    writer.close();
+
+    assertEquals("a?b?", out.toString("UTF-8"));
+  }
+
+  @Test
+  public void quoteShouldEscapeOnlyWhatNeedsEscaping() throws Exception {
+    assertEquals("\"plain text\"", JSONObject.quote("plain text"));
+    assertEquals("\"\"", JSONObject.quote(""));
+    assertEquals("\"a\\\"b\\\\c\"", JSONObject.quote("a\"b\\c"));
+    assertEquals("\"\\b\\t\\n\\f\\r\\u0001\"", JSONObject.quote("\b\t\n\f\r\u0001"));
+    assertEquals("\"/a/<\\/script>\"", JSONObject.quote("/a/</script>"));
+    assertEquals("\"\\u0085\u00a0caf\u00e9\\u2028\\u20ac\"", JSONObject.quote("\u0085\u00a0caf\u00e9\u2028\u20ac"));
+  }
+
+  @Test
+  public void numbersShouldBeWrittenAsNumberToStringWould() throws Exception {
+    final double[] doubles = {
+        0d, -0d, 1d, -1d, 0.1d, 0.3d, 0.1d + 0.2d, 1234.5d, 1.3f, 2e-3d, 1e-3d, Math.nextDown(1e-3d),
+        9999999.999d, Math.nextDown(1e7d), 1e7d, 123456789012345d, Math.PI, Double.MIN_VALUE, Double.MAX_VALUE};
+    for (final double value : doubles) {
+      final StringWriter writer = new StringWriter();
+      new JsonGenerator(writer, 0).value(value);
+      assertEquals(JSONObject.numberToString(value), writer.toString());
+    }
+
+    final long[] longs = {0L, 7L, -10L, Integer.MIN_VALUE, Long.MIN_VALUE, Long.MAX_VALUE};
+    for (final long value : longs) {
+      final StringWriter writer = new StringWriter();
+      new JsonGenerator(writer, 0).value(value);
+      assertEquals(Long.toString(value), writer.toString());
+    }
+  }
+
+  @Test
+  public void typeIdsShouldBeWrittenAndResolved() throws Exception {
+    final Types.SerializableWithTypeIdMembers original = Types$SerializableWithTypeIdMembersBuilder.newBuilder()
+        .withPoints(ImmutableList.of(
+            Types$SerializableWithTypeIdBuilder.newBuilder().withX(1).withY(2).build(),
+            Types$SerializableWithTypeIdBuilder.newBuilder().withX(3).withY(4).build()))
+        .build();
+
+    final String serialized = service.serialize(original);
+    assertEquals("point", new JSONObject(serialized).getJSONArray("points").getJSONObject(0).get("serializedType"));
+    assertEquals("point", service.createJSONObject(original.getPoints().get(0)).get("serializedType"));
+    assertEquals(serialized,
+        service.serialize(service.deserialize(serialized, Types.SerializableWithTypeIdMembers.class)));
+  }
+
+  @Test
+  public void generatedRegistryShouldListEveryPublicInterface() throws Exception {
+    final Map<Class<?>, ObjectFactory<?>> registered = new HashMap<>();
+    final Map<String, Class<?>> typeIds = new HashMap<>();
+    for (final TypeRegistry registry : ServiceLoader.load(TypeRegistry.class)) {
+      registry.registerAll(new TypeRegistry.Registrar() {
+        @Override
+        public <T extends Serializable> void register(
+            final Class<T> generatableInterface,
+            final String typeId,
+            final ObjectFactory<T> factory) {
+          registered.put(generatableInterface, factory);
+          if (typeId != null) {
+            typeIds.put(typeId, generatableInterface);
+          }
+        }
+      });
+    }
+
+    assertSame(SimpleTypeDTO.Factory.class, registered.get(SimpleType.class).getClass());
+    assertSame(Types.SerializableWithTypeId.class, typeIds.get("point"));
+    assertSame(
+        registered.get(Types.SerializableWithTypeId.class).getClass(),
+        new ObjectFactoryCache().getFactory("point").getClass());
+  }
+
+  @Test
+  public void warmUpShouldRoundTripEveryRegisteredType() throws Exception {
+    final Map<Class<?>, Integer> written = new HashMap<>();
+    final AbstractSerializationService counting = new AbstractSerializationService() {
+      @Override
+      public <T extends Serializable> String serialize(
+          final T obj,
+          final Class<T> serializeAs) throws SerializationError {
+        final Integer count = written.get(serializeAs);
+        written.put(serializeAs, count == null ? 1 : count + 1);
+        return super.serialize(obj, serializeAs);
+      }
+    };
+    final Set<Class<? extends Serializable>> registered = counting.getRegisteredTypes();
+    assertTrue(registered.contains(SimpleType.class));
+
+    final Set<Class<? extends Serializable>> skipped = counting.warmUp(registered, 3);
+    assertFalse(skipped.contains(SimpleType.class));
+    assertTrue(skipped.contains(ValidatedSimpleType.class));
+    final TestInstanceGenerator generator = new TestInstanceGenerator();
+    for (final Class<? extends Serializable> type : skipped) {
+      try {
+        generator.generate(type);
+        fail(type + " was skipped, but can be generated");
+      } catch (final Exception expected) {
+      }
+    }
+
+    final Set<Class<? extends Serializable>> roundTripped = new HashSet<>(registered);
+    roundTripped.removeAll(skipped);
+    assertEquals(roundTripped, written.keySet());
+    for (final Integer count : written.values()) {
+      assertEquals(3, (int) count);
+    }
+    service.warmUp(Collections.singleton(Types.SerializableWithTypeId.class));
+  }
+
+  @Test
+  public void typesShouldBeResolvedInTheServicesClassLoader() throws Exception {
+    final String json = service.serialize(new SubclassSerializableImpl().setAString("scoped"));
+    final ClassLoader tenant = new ClassLoader(getClass().getClassLoader()) {
+    };
+    service.setClassLoader(tenant);
+    assertEquals("scoped", service.deserialize(json, SubclassSerializable.class).getAString());
+    assertTrue(service.getRegisteredTypes().contains(SimpleType.class));
+
+    service.evict(tenant);
+    assertEquals("scoped", service.deserialize(json, SubclassSerializable.class).getAString());
+
+    final ClassLoader isolated = new ClassLoader(null) {
+    };
+    service.setClassLoader(isolated);
+    assertTrue(service.getRegisteredTypes().isEmpty());
+    try {
+      service.deserialize(json, SubclassSerializable.class);
+      fail("Resolved a type the class loader can't see");
+    } catch (final DeserializationException e) {
+      assertTrue(e.getMessage().contains(SubclassSerializable.class.getName()));
+    }
+
+    service.evict(isolated);
+    assertTrue(service.getRegisteredTypes().contains(SimpleType.class));
+    assertEquals("scoped", service.deserialize(json, SubclassSerializable.class).getAString());
+  }
+
+  @Test
+  public void codecShouldMatchTheService() throws Exception {
+    final Codec<SubclassSerializable> codec = service.codecFor(SubclassSerializable.class);
+    final SubclassSerializableImpl obj = new SubclassSerializableImpl()
+        .setAString("codec")
+        .setACollaborator(new CollaboratorSubclass2Impl());
+
+    assertEquals(service.serialize(obj, SubclassSerializable.class), codec.serialize(obj));
+    assertEquals(service.serialize(obj, SubclassSerializable.class), codec.serialize(obj));
+    assertArrayEquals(service.toBytes(obj, SubclassSerializable.class), codec.toBytes(obj));
+    assertEquals(codec.serialize(obj), codec.serialize(codec.read(codec.toBytes(obj))));
+
+    final Codec<Types.SerializableWithTypeId> points = service.codecFor(Types.SerializableWithTypeId.class);
+    final Types.SerializableWithTypeId point = points.read(
+        points.toBytes(Types$SerializableWithTypeIdBuilder.newBuilder().withX(1).withY(2).build()));
+    assertEquals(2, point.getY());
+  }
+
+  @Test
+  public void codecForAnUngeneratedBoundShouldResolveEachDocument() throws Exception {
+    final Codec<CollaboratorSerializable> codec = service.codecFor(CollaboratorSerializable.class);
+    final CollaboratorSerializable first = new CollaboratorSubclass1Impl().setAChildMember("first");
+    final CollaboratorSerializable second = new CollaboratorSubclass2Impl();
+
+    assertEquals(first, codec.read(codec.serialize(first)));
+    assertEquals(second, codec.read(codec.serialize(second)));
+    assertEquals(first, codec.read(new ByteArrayInputStream(codec.toBytes(first))));
+    try {
+      codec.read(service.serialize(SimpleTypeBuilder.newBuilder().withSomeString("one").withAnInt(2).build()));
+      fail("Read a SimpleType as a CollaboratorSerializable");
+    } catch (final DeserializationException e) {
+      assertTrue(e.getMessage().contains(CollaboratorSerializable.class.getName()));
+    }
+  }
+
+  @Test
+  public void factoriesShouldBeSharedBetweenCaches() throws Exception {
+    final SubclassSerializableImpl obj = new SubclassSerializableImpl();
+    final ObjectFactoryCache first = new ObjectFactoryCache();
+    final ObjectFactoryCache second = new ObjectFactoryCache();
+
+    assertSame(first.getFactory(SubclassSerializable.class), second.getFactory(SubclassSerializable.class));
+    assertSame(first.getFactory(obj), second.getFactory(obj));
+    assertSame(first.getFactory(obj, SubclassSerializable.class), second.getFactory(obj, SubclassSerializable.class));
+    assertSame(first.getFactory(SubclassSerializable.class.getName()), second.getFactory(obj));
+  }
+
+  @Test
+  public void directSerializationShouldMatchSerializationViaDTOs() throws Exception {
+    final SubclassSerializableImpl withNullList = new SubclassSerializableImpl()
+        .setAString("direct")
+        .setACollaborator(new CollaboratorSubclass2Impl())
+        .setChildList(null);
+    final Types.SerializableWithStringMapOfSerializables withMap
+        = Types$SerializableWithStringMapOfSerializablesBuilder.newBuilder()
+        .withStringMap(ImmutableMap.of(
+            "a", Types$SerializableWithStringMemberBuilder.newBuilder().withAString("one").build()))
+        .build();
+
+    final String viaDTOs = service.serialize(withNullList);
+    final String mapViaDTOs = service.serialize(withMap);
+    final byte[] bytesViaDTOs = service.toBytes(withNullList, SubclassSerializable.class);
+    service.setSerializeDirectly();
+
+    assertEquals(viaDTOs, service.serialize(withNullList));
+    assertEquals(mapViaDTOs, service.serialize(withMap));
+    assertArrayEquals(bytesViaDTOs, service.toBytes(withNullList, SubclassSerializable.class));
+  }
+
+  @Test
+  public void sharedSubObjectsShouldBeConvertedOnce() throws Exception {
+    final Types.SerializableWithStringMember shared
+        = Types$SerializableWithStringMemberBuilder.newBuilder().withAString("shared").build();
+    final Types.SerializableWithSerializableMemberList original
+        = Types$SerializableWithSerializableMemberListBuilder.newBuilder()
+        .withMembers(ImmutableList.of(shared, shared))
+        .build();
+
+    final Types.SerializableWithSerializableMemberList dto
+        = (Types.SerializableWithSerializableMemberList) service.createDTO(original);
+
+    assertNotSame(shared, dto.getMembers().get(0));
+    assertSame(dto.getMembers().get(0), dto.getMembers().get(1));
+  }
+
+  @Test
+  public void writeAllShouldWriteEachElementAsSerializeWould() throws Exception {
+    final List<SimpleType> objects = new ArrayList<>();
+    final StringBuilder array = new StringBuilder("[");
+    final StringBuilder lines = new StringBuilder();
+    for (int i = 0; i < 2500; ++i) {
+      final SimpleType object = SimpleTypeBuilder.newBuilder().withSomeString("item " + i).withAnInt(i).build();
+      objects.add(object);
+      array.append(i > 0 ? "," : "").append(service.serialize(object, SimpleType.class));
+      lines.append(service.serialize(object, SimpleType.class)).append('\n');
+    }
+    array.append("]");
+
+    final ByteArrayOutputStream asArray = new ByteArrayOutputStream();
+    service.writeAll(objects, SimpleType.class, asArray, SerializationService.Format.JSON_ARRAY);
+    assertEquals(array.toString(), asArray.toString("UTF-8"));
+
+    service.setSerializeDirectly();
+    final ByteArrayOutputStream asLines = new ByteArrayOutputStream();
+    service.writeAll(objects, SimpleType.class, asLines, SerializationService.Format.NDJSON);
+    assertEquals(lines.toString(), asLines.toString("UTF-8"));
+
+    final DocumentIterator<SimpleType> readBack
+        = service.readAll(new ByteArrayInputStream(asLines.toByteArray()), SimpleType.class);
+    for (final SimpleType object : objects) {
+      assertEquals(object.getSomeString(), readBack.next().getSomeString());
+    }
+  }
+}
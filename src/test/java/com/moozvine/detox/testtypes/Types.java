@@ -10,6 +10,17 @@ import java.util.List;
 import java.util.Map;
 
 public class Types {
+  @GenerateDTO(typeId = "point")
+  public interface SerializableWithTypeId extends Serializable {
+    int getX();
+    int getY();
+  }
+
+  @GenerateDTO
+  public interface SerializableWithTypeIdMembers extends Serializable {
+    List<SerializableWithTypeId> getPoints();
+  }
+
   @GenerateDTO
   public interface SerializableWithIntegerMember extends Serializable {
     int getAnInt();
@@ -105,6 +116,33 @@ public class Types {
     Map<AnEnum, String> getEnumMap();
   }
 
+  /**
+   * Members named after the parameters and locals of generated code.
+   */
+  @GenerateDTO
+  public interface SerializableWithGeneratedNames extends Serializable {
+    String getIn();
+    List<String> getMemberName();
+  }
+
+  /**
+   * Members named after the fields and parameters of generated DTOs, one of them written with a custom serializer.
+   */
+  @GenerateDTO
+  public interface SerializableWithGeneratedFieldNames extends Serializable {
+    String getService();
+    CharSequence getOut();
+  }
+
+  /**
+   * Members named after the parameters of the constructor a DTO is copied with.
+   */
+  @GenerateDTO
+  public interface SerializableWithCopyConstructorNames extends Serializable {
+    String getContext();
+    List<String> getOriginal();
+  }
+
   /* TODO...
   @GenerateDTO
   public interface SerializableWithStringMapOfLists extends Serializable {